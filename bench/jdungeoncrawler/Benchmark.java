@@ -0,0 +1,1133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Times the hot paths of the game on generated grid worlds and compares the
+ * results with saved baselines. Every case is run for a number of warm-up
+ * iterations (so the JIT compiler settles), then for a number of measured
+ * iterations of fixed length; the median time per operation is reported,
+ * with its difference from the baseline as a percentage (positive means
+ * slower). A few cases report the bytes allocated per operation, or the heap
+ * retained per operation, instead of the time.
+ * <p>
+ * The scaling cases (XML loading and pathfinding) run on their own grids, one
+ * per side given with --scaling, so their results can be compared across
+ * world sizes; they are skipped unless --scaling is given.
+ * <p>
+ * Arguments:
+ * <ul>
+ * <li>--side N: number of Sectors along each side of the grid (default
+ * 100)</li>
+ * <li>--density N: number of Entities in every Sector (default 4)</li>
+ * <li>--filter TEXT: only run the cases whose name contains TEXT</li>
+ * <li>--baseline FILE: compare with the results saved in FILE</li>
+ * <li>--save FILE: save the results to FILE (keeping the other results in
+ * it)</li>
+ * <li>--iterations N: number of measured iterations (default 5)</li>
+ * <li>--scaling N,N,...: sides of the grids to run the scaling cases on
+ * (e.g. 100,317,1000 for about 10 thousand, 100 thousand and 1 million
+ * Sectors)</li>
+ * </ul>
+ *
+ * @author Daniel Truong
+ */
+public class Benchmark {
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args the command line arguments
+     * @throws Exception If a world cannot be generated or parsed, or a
+     * baseline file cannot be read or written.
+     */
+    public static void main(String[] args) throws Exception {
+        int side = 100;
+        int density = 4;
+        int iterations = 5;
+        String filter = "";
+        String baselineFile = null;
+        String saveFile = null;
+        String scaling = "";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--side":
+                    side = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--density":
+                    density = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--filter":
+                    filter = args[i + 1];
+                    break;
+                case "--baseline":
+                    baselineFile = args[i + 1];
+                    break;
+                case "--save":
+                    saveFile = args[i + 1];
+                    break;
+                case "--scaling":
+                    scaling = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option "
+                            + args[i] + ".");
+            }
+        }
+
+        Properties baseline = load(baselineFile);
+        Properties results = load(saveFile);
+        List<Case> cases = cases(new WorldGenerator(side, density),
+                side + "x" + density);
+        for (String scaled : scaling.split(",")) {
+            if (!scaled.isEmpty()) {
+                int scaledSide = Integer.parseInt(scaled.trim());
+                cases.addAll(scalingCases(new WorldGenerator(scaledSide,
+                        density), scaledSide + "x" + density));
+            }
+        }
+        System.out.printf("%-26s %-12s %12s %-8s %12s %8s%n", "Benchmark",
+                "Params", "Result", "Unit", "baseline", "delta");
+        for (Case benchmark : cases) {
+            if (!benchmark.name.contains(filter)) {
+                continue;
+            }
+            benchmark.setUp();
+            double result = benchmark.measure(iterations);
+            benchmark.tearDown();
+            benchmark.world = null;
+            String key = benchmark.name + "[" + benchmark.params + "]";
+            String saved = baseline.getProperty(key);
+            String delta = "";
+            if (saved != null) {
+                double before = Double.parseDouble(saved);
+                delta = String.format("%+.1f%%", (result - before) / before
+                        * 100);
+            }
+            System.out.printf("%-26s %-12s %12.1f %-8s %12s %8s%n",
+                    benchmark.name, benchmark.params, result, benchmark.unit,
+                    saved == null ? "-" : saved, delta);
+            results.setProperty(key, String.format("%.1f", result));
+        }
+        if (saveFile != null) {
+            try (OutputStream out = new FileOutputStream(saveFile)) {
+                results.store(out, "Benchmark results (in each case's "
+                        + "unit), keyed by case[side x density]");
+            }
+        }
+    }
+
+    /**
+     * Runs a case for the warm-up and measured iterations.
+     *
+     * @param benchmark Case to run.
+     * @param iterations Number of measured iterations.
+     * @return Median time per operation in nanoseconds.
+     * @throws Exception If an operation fails.
+     */
+    private static double measure(Case benchmark, int iterations)
+            throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iterate(benchmark);
+        }
+        double[] samples = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            samples[i] = iterate(benchmark);
+        }
+        Arrays.sort(samples);
+        return samples[iterations / 2];
+    }
+
+    /**
+     * Runs a case repeatedly for one iteration.
+     *
+     * @param benchmark Case to run.
+     * @return Time per operation in nanoseconds.
+     * @throws Exception If an operation fails.
+     */
+    private static double iterate(Case benchmark) throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + ITERATION_NANOS;
+        long now;
+        do {
+            operations += benchmark.run();
+            now = System.nanoTime();
+        } while (now < end);
+        return (double) (now - start) / operations;
+    }
+
+    /**
+     * Runs a case for the warm-up iterations, then measures the bytes its
+     * thread allocates during a number of batches of operations.
+     *
+     * @param benchmark Case to run.
+     * @param iterations Number of measured iterations.
+     * @return Median number of bytes allocated per operation (NaN if the JVM
+     * cannot tell).
+     * @throws Exception If an operation fails.
+     */
+    private static double allocated(Case benchmark, int iterations)
+            throws Exception {
+        java.lang.management.ThreadMXBean bean
+                = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return Double.NaN;
+        }
+        com.sun.management.ThreadMXBean threads
+                = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iterate(benchmark);
+        }
+        double[] samples = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long operations = 0;
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int j = 0; j < ALLOCATION_BATCHES; j++) {
+                operations += benchmark.run();
+            }
+            long after = threads.getThreadAllocatedBytes(thread);
+            samples[i] = (double) (after - before) / operations;
+        }
+        Arrays.sort(samples);
+        return samples[iterations / 2];
+    }
+
+    /**
+     * Runs a number of batches of operations of a case and measures the heap
+     * held afterwards by what the batches built (which the case must keep
+     * until tearDown()). Enough batches should be run to outweigh the
+     * granularity of the collector's heap accounting.
+     *
+     * @param benchmark Case to run.
+     * @param batches Number of batches to run.
+     * @return Bytes of heap retained per operation.
+     * @throws Exception If an operation fails.
+     */
+    private static double retained(Case benchmark, int batches)
+            throws Exception {
+        long before = usedHeap();
+        long operations = 0;
+        for (int i = 0; i < batches; i++) {
+            operations += benchmark.run();
+        }
+        long after = usedHeap();
+        return (double) (after - before) / operations;
+    }
+
+    /**
+     * Returns the heap in use once garbage collections stop freeing any.
+     *
+     * @return Bytes of heap in use.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * Reads a file of saved results.
+     *
+     * @param fileName Name of the file (null for no file).
+     * @return Saved results (empty if there are none).
+     * @throws IOException If the file exists but cannot be read.
+     */
+    private static Properties load(String fileName) throws IOException {
+        Properties properties = new Properties();
+        if (fileName != null && new File(fileName).exists()) {
+            try (InputStream in = new FileInputStream(fileName)) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Builds the benchmark cases.
+     *
+     * @param generator Generator of the worlds the cases run on.
+     * @param params Size and density of the worlds.
+     * @return Benchmark cases.
+     */
+    private static List<Case> cases(final WorldGenerator generator,
+            String params) {
+        List<Case> cases = new ArrayList<>();
+
+        cases.add(new Case("entity.move") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                movers = new ArrayList<>();
+                for (int id = 0; id < world.size(); id += 7) {
+                    Sector current = world.getSector(id);
+                    Sector east = current.getNeighbor(Direction.EAST);
+                    List<Entity> entities = current.getEntities();
+                    if (east != null && !entities.isEmpty()
+                            && !(entities.get(0) instanceof Player)) {
+                        movers.add(entities.get(0));
+                        targets.add(east);
+                        homes.add(current);
+                    }
+                }
+            }
+
+            @Override
+            int run() {
+                for (int i = 0; i < movers.size(); i++) {
+                    movers.get(i).move(targets.get(i));
+                    movers.get(i).move(homes.get(i));
+                }
+                return movers.size() * 2;
+            }
+
+            private List<Entity> movers;
+            private final List<Sector> targets = new ArrayList<>();
+            private final List<Sector> homes = new ArrayList<>();
+        });
+
+        cases.add(new Case("journal.append") {
+            @Override
+            void setUp() throws Exception {
+                world = generator.generate(SEED);
+                directory = File.createTempFile("bench", ".journal");
+                directory.delete();
+                directory.mkdir();
+                journal = new Journal(world, directory.getPath(), 5);
+                player = world.getPlayer();
+            }
+
+            @Override
+            int run() {
+                for (int i = 0; i < APPENDS; i++) {
+                    player.changeRespect(i % 2 == 0 ? 1 : -1);
+                }
+                return APPENDS;
+            }
+
+            @Override
+            void tearDown() {
+                try {
+                    journal.close();
+                } catch (IOException ioe) {
+                    throw new IllegalStateException("The journal could not "
+                            + "be closed.", ioe);
+                }
+                for (File file : directory.listFiles()) {
+                    file.delete();
+                }
+                directory.delete();
+            }
+
+            private File directory;
+            private Journal journal;
+            private Player player;
+        });
+
+        cases.add(new Case("sector.addEntity") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                sector = world.getSector(generator.startId());
+                visitor = new Enemy("Aardvark", "sorts first");
+            }
+
+            @Override
+            int run() {
+                for (int i = 0; i < 100; i++) {
+                    sector.addEntity(visitor);
+                    sink += sector.entityCount();
+                    sector.removeEntity(visitor);
+                }
+                return 100;
+            }
+
+            private Sector sector;
+            private Entity visitor;
+        });
+
+        cases.add(new Case("sector.crowdedMove") {
+            @Override
+            void setUp() {
+                world = new World();
+                hub = new Sector("Hub", "A crowded hall.", 1, CROWD + 1,
+                        OverflowPolicy.REJECT);
+                Sector side = new Sector("Side", "A quiet room.", 1,
+                        CROWD + 1, OverflowPolicy.REJECT);
+                world.addSector(hub);
+                world.addSector(side);
+                hub.setNeighbor(Direction.EAST, side);
+                side.setNeighbor(Direction.WEST, hub);
+                for (int i = 0; i < CROWD; i++) {
+                    Entity entity = new Enemy("Crowd " + i, "Part of a crowd.");
+                    hub.addEntity(entity);
+                    entity.setCurrentSector(hub);
+                }
+                hub.getEntities();
+                mover = new Ally("Mover", "Walks in and out of the hall.");
+                side.addEntity(mover);
+                mover.setCurrentSector(side);
+                this.side = side;
+            }
+
+            @Override
+            int run() {
+                for (int i = 0; i < 100; i++) {
+                    mover.move(hub);
+                    mover.move(side);
+                }
+                sink += hub.entityCount();
+                return 200;
+            }
+
+            private Sector hub;
+            private Sector side;
+            private Entity mover;
+        });
+
+        cases.add(new Case("sector.getNeighbor") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                current = world.getSector(generator.startId());
+            }
+
+            @Override
+            int run() {
+                Direction[] directions = Direction.values();
+                for (int i = 0; i < 1000; i++) {
+                    Sector next = current.getNeighbor(directions[i & 3]);
+                    if (next != null) {
+                        current = next;
+                    }
+                }
+                sink += current.getId();
+                return 1000;
+            }
+
+            private Sector current;
+        });
+
+        cases.add(new Case("neighbors.table", "B/sector") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+            }
+
+            @Override
+            int run() {
+                held.add(world.getNeighborTable().clone());
+                return world.size();
+            }
+
+            @Override
+            double measure(int iterations) throws Exception {
+                return retained(this, 32);
+            }
+
+            @Override
+            void tearDown() {
+                held.clear();
+            }
+
+            private final List<int[]> held = new ArrayList<>();
+        });
+
+        cases.add(new Case("neighbors.hashmap", "B/sector") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+            }
+
+            @Override
+            int run() {
+                for (int id = 0; id < world.size(); id++) {
+                    Map<String, Sector> exits = new HashMap<>();
+                    for (Direction direction : Direction.values()) {
+                        Sector neighbor = world.getSector(id)
+                                .getNeighbor(direction);
+                        if (neighbor != null) {
+                            exits.put(direction.toString(), neighbor);
+                        }
+                    }
+                    held.add(exits);
+                }
+                return world.size();
+            }
+
+            @Override
+            double measure(int iterations) throws Exception {
+                return retained(this, 32);
+            }
+
+            @Override
+            void tearDown() {
+                held.clear();
+            }
+
+            private final List<Map<String, Sector>> held = new ArrayList<>();
+        });
+
+        cases.add(new Case("player.look") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                out = new StringBuilder(512);
+            }
+
+            @Override
+            int run() {
+                for (int i = 0; i < 100; i++) {
+                    out.setLength(0);
+                    world.getPlayer().execute("look", out);
+                }
+                sink += out.length();
+                return 100;
+            }
+
+            private StringBuilder out;
+        });
+
+        cases.add(new Case("player.look.alloc", "B/op") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                out = new StringBuilder(512);
+            }
+
+            @Override
+            int run() {
+                for (int i = 0; i < 100; i++) {
+                    out.setLength(0);
+                    world.getPlayer().execute("look", out);
+                }
+                sink += out.length();
+                return 100;
+            }
+
+            @Override
+            double measure(int iterations) throws Exception {
+                return allocated(this, iterations);
+            }
+
+            private StringBuilder out;
+        });
+
+        cases.add(parse("xml.parse/sector", generator));
+
+        cases.add(new Case("load.xml") {
+            @Override
+            void setUp() throws Exception {
+                file = File.createTempFile("bench", ".xml");
+                generator.writeXml(file.getPath());
+                factory = SAXParserFactory.newInstance();
+                out = new StringBuilder(512);
+            }
+
+            @Override
+            int run() throws Exception {
+                XMLHandler handler = new XMLHandler();
+                factory.newSAXParser().parse(file, handler);
+                out.setLength(0);
+                handler.getWorld().getPlayer().execute("look", out);
+                sink += out.length();
+                return 1;
+            }
+
+            @Override
+            void tearDown() {
+                file.delete();
+            }
+
+            private File file;
+            private SAXParserFactory factory;
+            private StringBuilder out;
+        });
+
+        cases.add(new Case("xml.heap/entity", "B/entity") {
+            @Override
+            void setUp() throws Exception {
+                file = File.createTempFile("bench", ".xml");
+                generator.writeXml(file.getPath());
+                factory = SAXParserFactory.newInstance();
+            }
+
+            @Override
+            int run() throws Exception {
+                XMLHandler handler = new XMLHandler();
+                factory.newSAXParser().parse(file, handler);
+                held.add(handler.getWorld());
+                return generator.entityCount();
+            }
+
+            @Override
+            double measure(int iterations) throws Exception {
+                return retained(this, 2);
+            }
+
+            @Override
+            void tearDown() {
+                held.clear();
+                file.delete();
+            }
+
+            private File file;
+            private SAXParserFactory factory;
+            private final List<World> held = new ArrayList<>();
+        });
+
+        cases.add(new Case("load.binary") {
+            @Override
+            void setUp() throws Exception {
+                File xml = File.createTempFile("bench", ".xml");
+                generator.writeXml(xml.getPath());
+                XMLHandler handler = new XMLHandler();
+                SAXParserFactory.newInstance().newSAXParser().parse(xml,
+                        handler);
+                xml.delete();
+                file = File.createTempFile("bench", ".dat");
+                new BinaryWorld().write(handler.getWorld(), file.getPath());
+                out = new StringBuilder(512);
+            }
+
+            @Override
+            int run() throws Exception {
+                World loaded = new BinaryWorld().read(file.getPath());
+                out.setLength(0);
+                loaded.getPlayer().execute("look", out);
+                sink += out.length();
+                return 1;
+            }
+
+            @Override
+            void tearDown() {
+                file.delete();
+            }
+
+            private File file;
+            private StringBuilder out;
+        });
+
+        cases.add(new Case("engine.command") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                engine = new CommandEngine(world, 1);
+            }
+
+            @Override
+            int run() {
+                sink += engine.run(SCRIPT).length;
+                return SCRIPT.length;
+            }
+
+            @Override
+            void tearDown() {
+                engine.shutdown();
+            }
+
+            private CommandEngine engine;
+        });
+
+        cases.add(new Case("simulation.tick/entity") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                simulation = new Simulation(world);
+            }
+
+            @Override
+            int run() {
+                simulation.tick();
+                return generator.entityCount();
+            }
+
+            @Override
+            void tearDown() {
+                simulation.shutdown();
+            }
+
+            private Simulation simulation;
+        });
+
+        cases.add(new Case("diffusion.tick/sector") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                diffusion = new Diffusion(world, 0.2f, 0.01f, 1.5f);
+            }
+
+            @Override
+            int run() {
+                diffusion.tick();
+                return world.size();
+            }
+
+            @Override
+            void tearDown() {
+                diffusion.shutdown();
+            }
+
+            private Diffusion diffusion;
+        });
+
+        cases.add(new Case("objects.select/entity") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                for (int id = 0; id < world.size(); id++) {
+                    world.setState(id, id % 4);
+                }
+            }
+
+            @Override
+            int run() {
+                int count = 0;
+                int id = 0;
+                for (Entity entity; (entity = world.getEntity(id)) != null;
+                        id++) {
+                    if (entity instanceof Enemy
+                            && entity.getCurrentSector().getState() == 0) {
+                        count++;
+                    }
+                }
+                sink += count;
+                return id;
+            }
+        });
+
+        cases.add(new Case("store.select/entity") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                for (int id = 0; id < world.size(); id++) {
+                    world.setState(id, id % 4);
+                }
+                store = new EntityStore(world);
+            }
+
+            @Override
+            int run() {
+                sink += store.select(EntityStore.ENEMY, 0).length;
+                return store.size();
+            }
+
+            @Override
+            void tearDown() {
+                store = null;
+            }
+
+            private EntityStore store;
+        });
+
+        cases.add(distance("pathfinder.distance", generator));
+
+        cases.add(new Case("random.roll") {
+            @Override
+            void setUp() {
+                random = new RandomSource(SEED);
+            }
+
+            @Override
+            int run() {
+                for (int i = 0; i < 1000; i++) {
+                    sink += random.roll(i & 63, index++);
+                }
+                return 1000;
+            }
+
+            private RandomSource random;
+            private long index;
+        });
+
+        cases.add(contended("random.contended", new Roller() {
+            @Override
+            public long roll(int stream, long first, int count) {
+                long sum = 0;
+                for (int i = 0; i < count; i++) {
+                    sum += random.roll(stream, first + i);
+                }
+                return sum;
+            }
+
+            private final RandomSource random = new RandomSource(SEED);
+        }));
+
+        cases.add(contended("math.random.contended", new Roller() {
+            @Override
+            public long roll(int stream, long first, int count) {
+                long sum = 0;
+                for (int i = 0; i < count; i++) {
+                    sum += (int) (Math.random() * 4);
+                }
+                return sum;
+            }
+        }));
+
+        for (Case benchmark : cases) {
+            benchmark.params = params;
+        }
+        return cases;
+    }
+
+    /**
+     * Builds the scaling cases, which are meant to be run on grids of several
+     * sizes.
+     *
+     * @param generator Generator of the worlds the cases run on.
+     * @param params Size and density of the worlds.
+     * @return Scaling cases.
+     */
+    private static List<Case> scalingCases(final WorldGenerator generator,
+            String params) {
+        List<Case> cases = new ArrayList<>();
+
+        cases.add(parse("scaling.xml/sector", generator));
+
+        cases.add(new Case("scaling.landmarks/sector") {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+            }
+
+            @Override
+            int run() {
+                new Pathfinder(world).buildLandmarks(LANDMARKS);
+                return world.size();
+            }
+        });
+
+        cases.add(distance("scaling.distance", generator));
+
+        for (Case benchmark : cases) {
+            benchmark.params = params;
+        }
+        return cases;
+    }
+
+    /**
+     * Builds a case that parses a generated XML world file, timed per Sector.
+     *
+     * @param name Name of the case.
+     * @param generator Generator of the world.
+     * @return Parsing case.
+     */
+    private static Case parse(String name, final WorldGenerator generator) {
+        return new Case(name) {
+            @Override
+            void setUp() throws Exception {
+                file = File.createTempFile("bench", ".xml");
+                generator.writeXml(file.getPath());
+                factory = SAXParserFactory.newInstance();
+            }
+
+            @Override
+            int run() throws Exception {
+                XMLHandler handler = new XMLHandler();
+                factory.newSAXParser().parse(file, handler);
+                sink += handler.getWorld().size();
+                return generator.size();
+            }
+
+            @Override
+            void tearDown() {
+                file.delete();
+            }
+
+            private File file;
+            private SAXParserFactory factory;
+        };
+    }
+
+    /**
+     * Builds a case that asks a Pathfinder with landmarks for the distance
+     * between two Sectors spread over a generated world.
+     *
+     * @param name Name of the case.
+     * @param generator Generator of the world.
+     * @return Distance case.
+     */
+    private static Case distance(String name,
+            final WorldGenerator generator) {
+        return new Case(name) {
+            @Override
+            void setUp() {
+                world = generator.generate(SEED);
+                pathfinder = new Pathfinder(world);
+                pathfinder.buildLandmarks(LANDMARKS);
+                query = 0;
+            }
+
+            @Override
+            int run() {
+                int from = (int) ((query * 7919L) % world.size());
+                int to = (int) ((query * 104729L + 13) % world.size());
+                query++;
+                sink += pathfinder.distance(world.getSector(from),
+                        world.getSector(to));
+                return 1;
+            }
+
+            @Override
+            void tearDown() {
+                pathfinder = null;
+            }
+
+            private Pathfinder pathfinder;
+            private int query;
+        };
+    }
+
+    /**
+     * Builds a case that draws random numbers from one thread per processor
+     * at once.
+     *
+     * @param name Name of the case.
+     * @param roller Source of the random numbers, shared by the threads.
+     * @return Contended case.
+     */
+    private static Case contended(String name, final Roller roller) {
+        return new Case(name) {
+            @Override
+            void setUp() {
+                threads = Math.max(2,
+                        Runtime.getRuntime().availableProcessors());
+                pool = Executors.newFixedThreadPool(threads);
+                tasks = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    final int stream = t;
+                    tasks.add(new Callable<Long>() {
+                        @Override
+                        public Long call() {
+                            long sum = roller.roll(stream, index,
+                                    ROLLS_PER_TASK);
+                            index += ROLLS_PER_TASK;
+                            return sum;
+                        }
+
+                        private long index;
+                    });
+                }
+            }
+
+            @Override
+            int run() throws Exception {
+                for (Future<Long> result : pool.invokeAll(tasks)) {
+                    sink += result.get();
+                }
+                return threads * ROLLS_PER_TASK;
+            }
+
+            @Override
+            void tearDown() {
+                pool.shutdown();
+            }
+
+            private int threads;
+            private ExecutorService pool;
+            private List<Callable<Long>> tasks;
+        };
+    }
+
+    /**
+     * Draws random numbers for the contended cases.
+     */
+    private interface Roller {
+
+        /**
+         * Draws random numbers.
+         *
+         * @param stream Stream to draw from (the number of the thread).
+         * @param first Index of the first number in the stream.
+         * @param count Number of random numbers to draw.
+         * @return Sum of the numbers drawn.
+         */
+        long roll(int stream, long first, int count);
+    }
+
+    /**
+     * Benchmark case: prepares its own world, then runs a batch of operations
+     * at a time.
+     */
+    private abstract static class Case {
+
+        /**
+         * Case class constructor.
+         *
+         * @param name Name of the case.
+         */
+        Case(String name) {
+            this(name, "ns/op");
+        }
+
+        /**
+         * Case class constructor.
+         *
+         * @param name Name of the case.
+         * @param unit Unit of the case's result.
+         */
+        Case(String name, String unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        /**
+         * Prepares the case before it is timed.
+         *
+         * @throws Exception If the case cannot be prepared.
+         */
+        abstract void setUp() throws Exception;
+
+        /**
+         * Runs one batch of operations.
+         *
+         * @return Number of operations run.
+         * @throws Exception If an operation fails.
+         */
+        abstract int run() throws Exception;
+
+        /**
+         * Measures the case once it is prepared (by default, the median time
+         * per operation).
+         *
+         * @param iterations Number of measured iterations.
+         * @return Result in the case's unit.
+         * @throws Exception If an operation fails.
+         */
+        double measure(int iterations) throws Exception {
+            return Benchmark.measure(this, iterations);
+        }
+
+        /**
+         * Releases what the case holds once it has been measured.
+         */
+        void tearDown() {
+        }
+
+        /**
+         * Name of the case.
+         */
+        final String name;
+
+        /**
+         * Unit of the case's result.
+         */
+        final String unit;
+
+        /**
+         * Size and density of the world the case runs on.
+         */
+        String params;
+
+        /**
+         * World the case runs on.
+         */
+        World world;
+    }
+
+    /**
+     * Commands run by the engine case.
+     */
+    private static final String[] SCRIPT = {"look", "north", "heat",
+        "south", "cool", "east", "look", "west", "help", "quit"};
+
+    /**
+     * Number of Entities already in the hall of the crowded move case.
+     */
+    private static final int CROWD = 5000;
+
+    /**
+     * Number of respect changes appended per batch of the journal case.
+     */
+    private static final int APPENDS = 1000;
+
+    /**
+     * Number of landmarks of the pathfinding cases.
+     */
+    private static final int LANDMARKS = 8;
+
+    /**
+     * Number of random numbers every thread draws per batch of the contended
+     * cases.
+     */
+    private static final int ROLLS_PER_TASK = 100000;
+
+    /**
+     * Number of batches of operations run per measured iteration of the
+     * allocation cases.
+     */
+    private static final int ALLOCATION_BATCHES = 100;
+
+    /**
+     * Seed of every generated world.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Number of warm-up iterations of every case.
+     */
+    private static final int WARMUP_ITERATIONS = 3;
+
+    /**
+     * Length of every iteration in nanoseconds.
+     */
+    private static final long ITERATION_NANOS = 500000000L;
+
+    /**
+     * Results of the timed operations, kept so the JIT compiler cannot drop
+     * the operations as dead code.
+     */
+    private static long sink;
+}
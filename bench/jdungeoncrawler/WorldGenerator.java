@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates square grid worlds of a given size and Entity density for the
+ * benchmarks, either directly as a World or as an XML world file. Sector i
+ * is named "Room i" and sits at row i / side, column i % side; every Sector
+ * holds the given number of Entities (alternating Allies and Enemies), and
+ * the Player starts in the middle Sector.
+ *
+ * @author Daniel Truong
+ */
+public class WorldGenerator {
+
+    /**
+     * WorldGenerator class constructor.
+     *
+     * @param side Number of Sectors along each side of the grid.
+     * @param density Number of Entities in every Sector.
+     */
+    public WorldGenerator(int side, int density) {
+        this.side = side;
+        this.density = density;
+        archetype = new Archetype(DESCRIPTION);
+    }
+
+    /**
+     * Builds the grid world.
+     *
+     * @param seed Seed of the World's random numbers.
+     * @return Generated World.
+     */
+    public World generate(long seed) {
+        World world = new World();
+        world.setRandom(new RandomSource(seed));
+        for (int id = 0; id < side * side; id++) {
+            world.addSector(new Sector(sectorName(id), DESCRIPTION, id % 4,
+                    density + 2, OverflowPolicy.REJECT));
+        }
+        for (int id = 0; id < side * side; id++) {
+            Sector current = world.getSector(id);
+            for (Direction direction : Direction.values()) {
+                int neighbor = neighborId(id, direction);
+                if (neighbor >= 0) {
+                    current.setNeighbor(direction, world.getSector(neighbor));
+                }
+            }
+            for (int i = 0; i < density; i++) {
+                Entity entity = createEntity(id, i);
+                current.addEntity(entity);
+                entity.setCurrentSector(current);
+            }
+        }
+        Player player = new Player("Player", DESCRIPTION);
+        Sector start = world.getSector(startId());
+        start.addEntity(player);
+        player.setCurrentSector(start);
+        world.setPlayer(player);
+        for (int id = 0; id < world.size(); id++) {
+            for (Entity entity : world.getSector(id).getEntities()) {
+                world.registerEntity(entity);
+            }
+        }
+        world.takeDirty();
+        return world;
+    }
+
+    /**
+     * Writes the grid world as an XML world file.
+     *
+     * @param fileName Name of the XML world file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeXml(String fileName) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(fileName), StandardCharsets.UTF_8))) {
+            out.write("<xml version=\"1.0\" encoding=\"UTF-8\">\n");
+            for (int id = 0; id < side * side; id++) {
+                out.write("\t<sector name=\"" + sectorName(id)
+                        + "\" description=\"" + DESCRIPTION + "\" state=\""
+                        + STATES[id % 4] + "\" capacity=\"" + (density + 2)
+                        + "\"");
+                for (Direction direction : Direction.values()) {
+                    int neighbor = neighborId(id, direction);
+                    if (neighbor >= 0) {
+                        out.write(" " + direction + "=\""
+                                + sectorName(neighbor) + "\"");
+                    }
+                }
+                out.write(">\n");
+                for (int i = 0; i < density; i++) {
+                    Entity entity = createEntity(id, i);
+                    out.write("\t\t<" + (entity instanceof Ally ? "ally"
+                            : "enemy") + " name=\"" + entity.getName()
+                            + "\" description=\"" + DESCRIPTION + "\" />\n");
+                }
+                if (id == startId()) {
+                    out.write("\t\t<player name=\"Player\" description=\""
+                            + DESCRIPTION + "\" />\n");
+                }
+                out.write("\t</sector>\n");
+            }
+            out.write("</xml>\n");
+        }
+    }
+
+    /**
+     * Returns the numerical ID of the Sector the Player starts in.
+     *
+     * @return Sector ID in the middle of the grid.
+     */
+    public int startId() {
+        return (side / 2) * side + side / 2;
+    }
+
+    /**
+     * Returns the number of Sectors in the grid.
+     *
+     * @return Number of Sectors.
+     */
+    public int size() {
+        return side * side;
+    }
+
+    /**
+     * Returns the number of non-player Entities in the grid.
+     *
+     * @return Number of Allies and Enemies.
+     */
+    public int entityCount() {
+        return side * side * density;
+    }
+
+    /**
+     * Returns the numerical ID of a Sector's neighbor in the grid.
+     *
+     * @param id Numerical ID of the Sector.
+     * @param direction Direction of the neighbor.
+     * @return Numerical ID of the neighbor (-1 at the edge of the grid).
+     */
+    private int neighborId(int id, Direction direction) {
+        int row = id / side;
+        int column = id % side;
+        switch (direction) {
+            case NORTH:
+                return row > 0 ? id - side : -1;
+            case SOUTH:
+                return row < side - 1 ? id + side : -1;
+            case EAST:
+                return column < side - 1 ? id + 1 : -1;
+            default:
+                return column > 0 ? id - 1 : -1;
+        }
+    }
+
+    /**
+     * Creates one of the Entities of a Sector.
+     *
+     * @param id Numerical ID of the Sector.
+     * @param index Position of the Entity in the Sector.
+     * @return Ally for even positions, Enemy for odd ones.
+     */
+    private Entity createEntity(int id, int index) {
+        String name = "Entity " + id + "-" + index;
+        return index % 2 == 0 ? new Ally(name, archetype)
+                : new Enemy(name, archetype);
+    }
+
+    /**
+     * Returns the name of a Sector.
+     *
+     * @param id Numerical ID of the Sector.
+     * @return Name of the Sector.
+     */
+    private static String sectorName(int id) {
+        return "Room " + id;
+    }
+
+    /**
+     * Description given to every generated Sector and Entity.
+     */
+    private static final String DESCRIPTION = "generated for benchmarking";
+
+    /**
+     * Temperature names in the order of their numerical representation.
+     */
+    private static final String[] STATES = {"cold", "cool", "warm", "hot"};
+
+    /**
+     * Number of Sectors along each side of the grid.
+     */
+    private final int side;
+
+    /**
+     * Number of Entities in every Sector.
+     */
+    private final int density;
+
+    /**
+     * Archetype shared by every generated Entity.
+     */
+    private final Archetype archetype;
+}
@@ -31,13 +31,38 @@ package jdungeoncrawler;
 public class Ally extends Entity {
 
     /**
-     * Ally class constructor.
+     * Ally class constructor. Allies seek warm Sectors: a disturbed Ally
+     * moves to its warmest neighbor, and stays put if no neighbor is warmer
+     * than its Sector.
      *
      * @param name Name given to the Ally.
      * @param description Description given to the Ally.
      */
     public Ally(String name, String description) {
-        super(name, description);
+        this(name, new Archetype(description));
+    }
+
+    /**
+     * Ally class constructor for an Ally of a shared archetype.
+     *
+     * @param name Name given to the Ally.
+     * @param archetype Archetype holding the Ally's description.
+     */
+    public Ally(String name, Archetype archetype) {
+        super(name, archetype);
+        setBehavior(TemperatureSeeker.WARM);
+    }
+
+    /**
+     * Returns a new Ally with the same name, description and Behavior.
+     *
+     * @return Copy of the Ally.
+     */
+    @Override
+    public Entity copy() {
+        Ally copy = new Ally(getName(), getArchetype());
+        copy.setBehavior(getBehavior());
+        return copy;
     }
 
     /**
@@ -45,15 +70,21 @@ public class Ally extends Entity {
      * if the room temperature was increased, decreases otherwise.
      *
      * @param heat True if the Player heated the room, False otherwise.
-     * @param player Player Entity being affected.
+     * @return Change in the Player's respect.
+     */
+    @Override
+    public int getRespectChange(boolean heat) {
+        return heat ? 1 : -1;
+    }
+
+    /**
+     * Ally tries to leave the Sector when the Player cools it.
+     *
+     * @param heat True if the Player heated the room, False otherwise.
+     * @return True if the room was cooled, False otherwise.
      */
     @Override
-    public void react(boolean heat, Player player) {
-        if (heat) {
-            player.increaseRespect();
-        } else {
-            player.descreaseRespect();
-            attemptMove();
-        }
+    public boolean isDisturbed(boolean heat) {
+        return !heat;
     }
 }
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+/**
+ * Shared type of Entities: the description every Entity of the type has in
+ * common. Entities of one archetype all point at the same Archetype (a
+ * flyweight), so a World with many creatures of a few kinds holds each
+ * description once rather than once per creature. Names are not shared: every
+ * Entity keeps its own, since Entities with the same description may have
+ * different names.
+ *
+ * @author Daniel Truong
+ */
+public class Archetype {
+
+    /**
+     * Archetype class constructor.
+     *
+     * @param description Description shared by every Entity of the
+     * archetype.
+     */
+    public Archetype(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Returns the description shared by every Entity of the archetype.
+     *
+     * @return Archetype description.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Description shared by every Entity of the archetype.
+     */
+    private final String description;
+}
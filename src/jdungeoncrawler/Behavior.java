@@ -0,0 +1,44 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+/**
+ * Decides where an Entity moves on its own. Behaviors work on Sector IDs
+ * rather than Sector objects, so a simulation can make the decisions for a
+ * whole batch of Entities in one pass over plain arrays.
+ *
+ * @author Daniel Truong
+ */
+public interface Behavior {
+
+    /**
+     * Chooses the Sector an Entity should move to next.
+     *
+     * @param world World the Entity is in.
+     * @param sector Numerical ID of the Sector the Entity is in.
+     * @param roll Random number the Behavior may use to choose.
+     * @return Numerical ID of the Sector to move to (-1 to stay put).
+     */
+    int decide(World world, int sector, int roll);
+}
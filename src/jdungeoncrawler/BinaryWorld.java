@@ -0,0 +1,1206 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compiled binary form of the game world. The file holds a header (with the
+ * World's random seed, if it has one), a table of every distinct string, the
+ * neighbor table (neighbors stored as Sector IDs), the temperature of every
+ * Sector, fixed-width Sector records, fixed-width Entity records (grouped by
+ * Sector) and the Sector every Entity ID starts in. It is read back through
+ * a memory-mapped buffer: only the header, the neighbor table and the
+ * temperatures are read up front, and every other Sector is decoded (along
+ * with the Entities in it) the first time it is used, so no XML has to be
+ * parsed and nothing has to be decoded for the parts of the World that are
+ * never visited.
+ * <p>
+ * A binary world file can also be streamed, for worlds too large to hold in
+ * memory. The Sectors are then loaded in regions of 256 consecutive IDs,
+ * and only a fixed number of regions is kept in memory: when another region
+ * is needed, the least recently used one is evicted (never the one the
+ * Player is in). Regions that changed are written to a swap file when they
+ * are evicted and read back from it when they are needed again, so the heap
+ * used depends on the number of regions kept rather than on the size of the
+ * World. Entities are read back with the default Behavior of their type.
+ * <p>
+ * Every Entity record holds the Entity's ID, and Entities are registered
+ * under the same ID when they are decoded; writing never changes the World.
+ * Entities that are not registered with the World are written under IDs
+ * after the highest registered one. Entities with the same description are
+ * read back sharing one Archetype.
+ *
+ * @author Daniel Truong
+ */
+public class BinaryWorld {
+
+    /**
+     * BinaryWorld class constructor.
+     */
+    public BinaryWorld() {
+        strings = new ArrayList<>();
+        stringIds = new HashMap<>();
+    }
+
+    /**
+     * Writes a World to a binary world file.
+     *
+     * @param world World to write.
+     * @param fileName Name of the binary world file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(World world, String fileName) throws IOException {
+        int size = world.size();
+        int idCount = 0;
+        List<List<Entity>> contents = new ArrayList<>(size);
+        for (int id = 0; id < size; id++) {
+            Sector current = world.getSector(id);
+            stringId(current.getName());
+            stringId(current.getDescription());
+            List<Entity> entities = current.getEntities();
+            for (Entity entity : entities) {
+                idCount = Math.max(idCount, entity.getId() + 1);
+                stringId(entity.getName());
+                stringId(entity.getDescription());
+            }
+            contents.add(entities);
+        }
+        IdentityHashMap<Entity, Integer> unregistered = new IdentityHashMap<>();
+        int entityCount = 0;
+        for (List<Entity> entities : contents) {
+            for (Entity entity : entities) {
+                if (entity.getId() < 0) {
+                    unregistered.put(entity, idCount + unregistered.size());
+                }
+                entityCount++;
+            }
+        }
+        int[] startSectors = new int[idCount + unregistered.size()];
+        Arrays.fill(startSectors, -1);
+        for (int id = 0; id < size; id++) {
+            for (Entity entity : contents.get(id)) {
+                startSectors[entityId(entity, unregistered)] = id;
+            }
+        }
+        Player player = world.getPlayer();
+        int playerId = player == null || player.getCurrentSector() == null
+                ? -1 : entityId(player, unregistered);
+
+        byte[][] encoded = new byte[strings.size()][];
+        int tables = HEADER_SIZE + strings.size() * 4;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            tables += 4 + encoded[i].length;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(strings.size());
+            out.writeInt(size);
+            out.writeInt(entityCount);
+            out.writeInt(startSectors.length);
+            out.writeInt(playerId);
+            out.writeInt(tables);
+            out.writeInt(world.getRandom().isSeeded() ? 1 : 0);
+            out.writeLong(world.getRandom().getSeed());
+            int offset = HEADER_SIZE + strings.size() * 4;
+            for (byte[] bytes : encoded) {
+                out.writeInt(offset);
+                offset += 4 + bytes.length;
+            }
+            for (byte[] bytes : encoded) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            for (int id = 0; id < size; id++) {
+                for (Direction direction : Direction.VALUES) {
+                    out.writeInt(world.getNeighborId(id, direction));
+                }
+            }
+            for (int id = 0; id < size; id++) {
+                out.writeInt(world.getState(id));
+            }
+            int first = 0;
+            for (int id = 0; id < size; id++) {
+                Sector current = world.getSector(id);
+                out.writeInt(stringId(current.getName()));
+                out.writeInt(stringId(current.getDescription()));
+                out.writeInt(current.getCapacity());
+                out.writeInt(current.getOverflowPolicy().ordinal());
+                out.writeInt(first);
+                out.writeInt(contents.get(id).size());
+                first += contents.get(id).size();
+            }
+            for (List<Entity> entities : contents) {
+                for (Entity entity : entities) {
+                    out.writeInt(entityId(entity, unregistered));
+                    out.writeInt(EntityStore.typeOf(entity));
+                    out.writeInt(stringId(entity.getName()));
+                    out.writeInt(stringId(entity.getDescription()));
+                }
+            }
+            for (int sector : startSectors) {
+                out.writeInt(sector);
+            }
+        }
+    }
+
+    /**
+     * Reads a World from a binary world file. Only the header, the neighbor
+     * table and the temperatures are read here (along with the Sector the
+     * Player is in); the other Sectors are decoded the first time they are
+     * used. Entities beyond a Sector's capacity are left out of the World.
+     *
+     * @param fileName Name of the binary world file.
+     * @return World read from the file.
+     * @throws IOException If the file cannot be read or is not a binary world
+     * file, or the Player does not fit in its Sector.
+     */
+    public World read(String fileName) throws IOException {
+        MappedByteBuffer buffer = map(fileName);
+        int sectorCount = buffer.getInt(12);
+        int playerId = buffer.getInt(24);
+        int tables = buffer.getInt(28);
+
+        World world = newWorld(buffer);
+        int[] neighbors = new int[sectorCount * 4];
+        for (int i = 0; i < neighbors.length; i++) {
+            neighbors[i] = buffer.getInt(tables + i * 4);
+        }
+        int states = tables + neighbors.length * 4;
+        float[] temperatures = new float[sectorCount];
+        for (int id = 0; id < sectorCount; id++) {
+            temperatures[id] = buffer.getInt(states + id * 4);
+        }
+        world.setNeighborTable(neighbors);
+        world.setTemperatures(temperatures);
+        world.reserveEntities(buffer.getInt(20));
+        world.setSource(new MappedSectors(world, buffer));
+        setPlayer(world, playerId, fileName);
+        return world;
+    }
+
+    /**
+     * Streams a World from a binary world file, keeping at most a number of
+     * regions of Sectors in memory. A streamed World is meant to be played
+     * from a single thread; it cannot be forked, and new Sectors and
+     * Entities cannot be added to it.
+     *
+     * @param fileName Name of the binary world file.
+     * @param regions Largest number of regions kept in memory (at least 2).
+     * @return World streamed from the file.
+     * @throws IOException If the file cannot be read or is not a binary world
+     * file, the swap file cannot be created, or the Player does not fit in
+     * its Sector.
+     */
+    public World stream(String fileName, int regions) throws IOException {
+        if (regions < 2) {
+            throw new IllegalArgumentException(
+                    "At least 2 regions must be kept in memory.");
+        }
+        MappedByteBuffer buffer = map(fileName);
+        int playerId = buffer.getInt(24);
+        World world = newWorld(buffer);
+        world.setNeighborTable(null);
+        world.setTemperatures(null);
+        world.setSource(new StreamedSectors(world, buffer, regions));
+        setPlayer(world, playerId, fileName);
+        return world;
+    }
+
+    /**
+     * Makes the Entity with the Player's ID the Player of a World read from
+     * a binary world file.
+     *
+     * @param world World read from the file.
+     * @param playerId Entity ID of the Player (-1 for no Player).
+     * @param fileName Name of the binary world file.
+     * @throws IOException If the Player was left out of its Sector.
+     */
+    private static void setPlayer(World world, int playerId, String fileName)
+            throws IOException {
+        if (playerId < 0) {
+            return;
+        }
+        Entity player = world.getEntity(playerId);
+        if (!(player instanceof Player)) {
+            throw new IOException("The player does not fit in its sector in "
+                    + fileName + ".");
+        }
+        world.setPlayer((Player) player);
+    }
+
+    /**
+     * Maps a binary world file into memory and checks its header.
+     *
+     * @param fileName Name of the binary world file.
+     * @return Mapped file.
+     * @throws IOException If the file cannot be read or is not a binary world
+     * file.
+     */
+    private static MappedByteBuffer map(String fileName) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+                FileChannel channel = file.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException(fileName + " is not a binary world file.");
+        }
+        return buffer;
+    }
+
+    /**
+     * Creates the World a binary world file is read into, with the file's
+     * random seed (if it has one).
+     *
+     * @param buffer Mapped binary world file.
+     * @return Empty World.
+     */
+    private static World newWorld(ByteBuffer buffer) {
+        World world = new World();
+        if (buffer.getInt(32) != 0) {
+            world.setRandom(new RandomSource(buffer.getLong(36)));
+        }
+        return world;
+    }
+
+    /**
+     * Creates an Entity of a type written to a binary world file.
+     *
+     * @param type Entity type.
+     * @param name Name of the Entity.
+     * @param archetype Archetype holding the Entity's description.
+     * @return New Entity.
+     */
+    private static Entity createEntity(int type, String name,
+            Archetype archetype) {
+        switch (type) {
+            case EntityStore.PLAYER:
+                return new Player(name, archetype);
+            case EntityStore.ALLY:
+                return new Ally(name, archetype);
+            default:
+                return new Enemy(name, archetype);
+        }
+    }
+
+    /**
+     * Decodes a string of the string table of a binary world file.
+     *
+     * @param buffer Mapped binary world file.
+     * @param index Index of the string in the string table.
+     * @return Decoded string.
+     */
+    private static String string(ByteBuffer buffer, int index) {
+        int offset = buffer.getInt(HEADER_SIZE + index * 4);
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the ID an Entity is written under.
+     *
+     * @param entity Entity to look up.
+     * @param unregistered IDs given to the Entities that are not registered
+     * with the World.
+     * @return Entity ID in the file.
+     */
+    private static int entityId(Entity entity,
+            IdentityHashMap<Entity, Integer> unregistered) {
+        Integer id = unregistered.get(entity);
+        return id == null ? entity.getId() : id;
+    }
+
+    /**
+     * Returns the index of a string in the string table, adding it if it has
+     * not been seen yet.
+     *
+     * @param string String to look up.
+     * @return Index of the string in the string table.
+     */
+    private int stringId(String string) {
+        Integer id = stringIds.get(string);
+        if (id == null) {
+            id = strings.size();
+            strings.add(string);
+            stringIds.put(string, id);
+        }
+        return id;
+    }
+
+    /**
+     * Marker at the start of every binary world file ("JDCW").
+     */
+    private static final int MAGIC = 0x4A444357;
+
+    /**
+     * Version of the binary world format.
+     */
+    private static final int VERSION = 5;
+
+    /**
+     * Size in bytes of the header (magic, version, string count, Sector
+     * count, Entity record count, Entity ID count, Player ID, offset of the
+     * neighbor table, seeded flag and seed).
+     */
+    private static final int HEADER_SIZE = 44;
+
+    /**
+     * Size in bytes of a Sector record (name, description, capacity,
+     * overflow policy, index of its first Entity record and number of Entity
+     * records).
+     */
+    private static final int SECTOR_RECORD = 24;
+
+    /**
+     * Size in bytes of an Entity record (ID, type as given by
+     * EntityStore.typeOf(), name and description).
+     */
+    private static final int ENTITY_RECORD = 16;
+
+    /**
+     * Number of consecutive Sectors in a region of a streamed World.
+     */
+    private static final int REGION_SIZE = 256;
+
+    /**
+     * Distinct strings written to the string table, in table order.
+     */
+    private final ArrayList<String> strings;
+
+    /**
+     * Index of each string in the string table.
+     */
+    private final HashMap<String, Integer> stringIds;
+
+    /**
+     * Supplies the Sectors of a World read from a binary world file,
+     * decoding each Sector (and the Entities in it) from the mapped file the
+     * first time it is used. Decoding is done under the source's lock, and a
+     * decoded Sector is published through an atomic array, so the Sectors
+     * can be used from several threads.
+     */
+    private static final class MappedSectors implements SectorSource {
+
+        /**
+         * MappedSectors class constructor.
+         *
+         * @param world World the Sectors are supplied to.
+         * @param buffer Mapped binary world file.
+         */
+        MappedSectors(World world, ByteBuffer buffer) {
+            this.world = world;
+            this.buffer = buffer;
+            int sectorCount = buffer.getInt(12);
+            idCount = buffer.getInt(20);
+            neighborStart = buffer.getInt(28);
+            sectorStart = neighborStart + sectorCount * 20;
+            entityStart = sectorStart + sectorCount * SECTOR_RECORD;
+            startStart = entityStart + buffer.getInt(16) * ENTITY_RECORD;
+            strings = new String[buffer.getInt(8)];
+            archetypes = new Archetype[strings.length];
+            sectors = new AtomicReferenceArray<>(sectorCount);
+            names = null;
+            held = 0;
+        }
+
+        /**
+         * Returns the number of Sectors in the file.
+         *
+         * @return Sector count.
+         */
+        @Override
+        public int size() {
+            return sectors.length();
+        }
+
+        /**
+         * Returns a Sector by numerical ID, decoding it if it was not used
+         * yet.
+         *
+         * @param id Numerical ID of the Sector.
+         * @return Sector with the given ID.
+         */
+        @Override
+        public Sector getSector(int id) {
+            Sector sector = sectors.get(id);
+            if (sector == null) {
+                synchronized (this) {
+                    sector = sectors.get(id);
+                    if (sector == null) {
+                        sector = decode(id);
+                    }
+                }
+            }
+            return sector;
+        }
+
+        /**
+         * Returns a Sector by name. The Sector names are all decoded into an
+         * index the first time this is called.
+         *
+         * @param name Name of the Sector.
+         * @return Sector with the given name (null if not found).
+         */
+        @Override
+        public synchronized Sector getSector(String name) {
+            if (names == null) {
+                names = new HashMap<>();
+                for (int id = 0; id < sectors.length(); id++) {
+                    names.put(string(buffer.getInt(sectorStart
+                            + id * SECTOR_RECORD)), id);
+                }
+            }
+            Integer id = names.get(name);
+            return id == null ? null : getSector(id);
+        }
+
+        /**
+         * Returns an Entity by numerical ID, decoding the Sector it started
+         * in first.
+         *
+         * @param id Numerical ID of the Entity.
+         * @return Entity with the given ID (null if there is none).
+         */
+        @Override
+        public Entity getEntity(int id) {
+            if (id >= 0 && id < idCount) {
+                int sector = buffer.getInt(startStart + id * 4);
+                if (sector >= 0) {
+                    getSector(sector);
+                }
+            }
+            return world.registeredEntity(id);
+        }
+
+        /**
+         * Returns the numerical ID of the neighbor of a Sector (based on
+         * direction), read from the mapped file.
+         *
+         * @param id Numerical ID of the Sector.
+         * @param direction Direction of the neighbor.
+         * @return Sector ID at the direction (-1 if there is none).
+         */
+        @Override
+        public int getNeighborId(int id, Direction direction) {
+            return buffer.getInt(neighborStart
+                    + (id * 4 + direction.ordinal()) * 4);
+        }
+
+        /**
+         * Returns the capacity of a Sector, read from the mapped file.
+         *
+         * @param id Numerical ID of the Sector.
+         * @return Sector capacity.
+         */
+        @Override
+        public int getCapacity(int id) {
+            return buffer.getInt(sectorStart + id * SECTOR_RECORD + 8);
+        }
+
+        /**
+         * Returns the number of Sectors decoded so far.
+         *
+         * @return Number of Sectors held in memory.
+         */
+        @Override
+        public synchronized int heldSectors() {
+            return held;
+        }
+
+        /**
+         * Returns the Sectors decoded so far.
+         *
+         * @return Snapshot of the Sectors held in memory.
+         */
+        @Override
+        public List<Sector> getHeldSectors() {
+            List<Sector> held = new ArrayList<>();
+            for (int id = 0; id < sectors.length(); id++) {
+                Sector sector = sectors.get(id);
+                if (sector != null) {
+                    held.add(sector);
+                }
+            }
+            return held;
+        }
+
+        /**
+         * Returns whether Sectors may be evicted again (never: a decoded
+         * Sector is kept for good).
+         *
+         * @return False.
+         */
+        @Override
+        public boolean evicts() {
+            return false;
+        }
+
+        /**
+         * Decodes a Sector and the Entities in it, and registers the
+         * Entities with the World.
+         *
+         * @param id Numerical ID of the Sector.
+         * @return Decoded Sector.
+         */
+        private Sector decode(int id) {
+            int record = sectorStart + id * SECTOR_RECORD;
+            Sector sector = new Sector(string(buffer.getInt(record)),
+                    string(buffer.getInt(record + 4)), world.getState(id),
+                    buffer.getInt(record + 8),
+                    OverflowPolicy.values()[buffer.getInt(record + 12)]);
+            int first = buffer.getInt(record + 16);
+            Entity[] entities = new Entity[buffer.getInt(record + 20)];
+            for (int i = 0; i < entities.length; i++) {
+                entities[i] = decodeEntity(entityStart
+                        + (first + i) * ENTITY_RECORD);
+                if (sector.addEntity(entities[i])) {
+                    entities[i].setCurrentSector(sector);
+                }
+            }
+            sector.clearDirty();
+            sector.setWorld(world, id);
+            for (Entity entity : entities) {
+                if (entity.getCurrentSector() == sector) {
+                    world.registerEntity(entity, entity.getId());
+                }
+            }
+            sectors.set(id, sector);
+            held++;
+            return sector;
+        }
+
+        /**
+         * Decodes an Entity record.
+         *
+         * @param record Offset of the record in the file.
+         * @return Decoded Entity (not yet placed or registered).
+         */
+        private Entity decodeEntity(int record) {
+            String name = string(buffer.getInt(record + 8));
+            int description = buffer.getInt(record + 12);
+            if (archetypes[description] == null) {
+                archetypes[description] = new Archetype(
+                        string(description));
+            }
+            Entity entity = createEntity(buffer.getInt(record + 4), name,
+                    archetypes[description]);
+            entity.setId(buffer.getInt(record));
+            return entity;
+        }
+
+        /**
+         * Returns a string from the string table, decoding it the first time
+         * it is used.
+         *
+         * @param index Index of the string in the string table.
+         * @return Decoded string.
+         */
+        private String string(int index) {
+            if (strings[index] == null) {
+                strings[index] = BinaryWorld.string(buffer, index);
+            }
+            return strings[index];
+        }
+
+        /**
+         * World the Sectors are supplied to.
+         */
+        private final World world;
+
+        /**
+         * Mapped binary world file.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Number of Entity IDs in the file.
+         */
+        private final int idCount;
+
+        /**
+         * Offset of the neighbor table.
+         */
+        private final int neighborStart;
+
+        /**
+         * Offset of the first Sector record.
+         */
+        private final int sectorStart;
+
+        /**
+         * Offset of the first Entity record.
+         */
+        private final int entityStart;
+
+        /**
+         * Offset of the table of the Sector every Entity ID starts in.
+         */
+        private final int startStart;
+
+        /**
+         * Strings of the string table decoded so far.
+         */
+        private final String[] strings;
+
+        /**
+         * Archetypes created so far, by index of their description in the
+         * string table.
+         */
+        private final Archetype[] archetypes;
+
+        /**
+         * Sectors decoded so far, by Sector ID.
+         */
+        private final AtomicReferenceArray<Sector> sectors;
+
+        /**
+         * Sector IDs by name (null until a Sector is first looked up by
+         * name).
+         */
+        private HashMap<String, Integer> names;
+
+        /**
+         * Number of Sectors decoded so far.
+         */
+        private int held;
+    }
+
+    /**
+     * Region of consecutive Sectors of a streamed World held in memory.
+     */
+    private static final class Region {
+
+        /**
+         * Region class constructor.
+         *
+         * @param size Number of Sectors in the region.
+         */
+        Region(int size) {
+            sectors = new Sector[size];
+            rolls = 0;
+        }
+
+        /**
+         * Sectors of the region, in Sector ID order.
+         */
+        final Sector[] sectors;
+
+        /**
+         * Total number of random numbers drawn by the Entities of the region
+         * when it was loaded (Entities that only drew numbers leave their
+         * Sectors unchanged, but must be saved all the same).
+         */
+        long rolls;
+    }
+
+    /**
+     * Supplies the Sectors of a streamed World, keeping a fixed number of
+     * regions in memory. Regions are evicted in least recently used order,
+     * except for the region the Player is in. A region is written to the
+     * swap file when it is evicted, if it changed since it was loaded; the
+     * Entities of an evicted region are taken out of their Sectors, so stale
+     * references to them cannot move them. Every method is synchronized, but
+     * the World is meant to be played from a single thread.
+     */
+    private static final class StreamedSectors implements SectorSource {
+
+        /**
+         * StreamedSectors class constructor.
+         *
+         * @param world World the Sectors are supplied to.
+         * @param buffer Mapped binary world file.
+         * @param capacity Largest number of regions kept in memory.
+         * @throws IOException If the swap file cannot be created.
+         */
+        StreamedSectors(World world, ByteBuffer buffer, int capacity)
+                throws IOException {
+            this.world = world;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            sectorCount = buffer.getInt(12);
+            idCount = buffer.getInt(20);
+            neighborStart = buffer.getInt(28);
+            stateStart = neighborStart + sectorCount * 16;
+            sectorStart = stateStart + sectorCount * 4;
+            entityStart = sectorStart + sectorCount * SECTOR_RECORD;
+            startStart = entityStart + buffer.getInt(16) * ENTITY_RECORD;
+            File file = File.createTempFile("jdungeoncrawler", ".swap");
+            file.deleteOnExit();
+            swap = new RandomAccessFile(file, "rw");
+            resident = new LinkedHashMap<>(16, 0.75f, true);
+            entities = new HashMap<>();
+            swapped = new HashMap<>();
+            loaded = new BitSet();
+            archetypes = new HashMap<>();
+        }
+
+        /**
+         * Returns the number of Sectors in the file.
+         *
+         * @return Sector count.
+         */
+        @Override
+        public int size() {
+            return sectorCount;
+        }
+
+        /**
+         * Returns a Sector by numerical ID, loading its region if it is not
+         * in memory.
+         *
+         * @param id Numerical ID of the Sector.
+         * @return Sector with the given ID.
+         */
+        @Override
+        public synchronized Sector getSector(int id) {
+            if (id < 0 || id >= sectorCount) {
+                throw new IndexOutOfBoundsException("Sector " + id);
+            }
+            return region(id / REGION_SIZE).sectors[id % REGION_SIZE];
+        }
+
+        /**
+         * Returns a Sector by name. The Sector records are searched in
+         * order, so the lookup takes time but no memory.
+         *
+         * @param name Name of the Sector.
+         * @return Sector with the given name (null if not found).
+         */
+        @Override
+        public synchronized Sector getSector(String name) {
+            for (int id = 0; id < sectorCount; id++) {
+                if (name.equals(string(buffer, buffer.getInt(sectorStart
+                        + id * SECTOR_RECORD)))) {
+                    return getSector(id);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns an Entity by numerical ID. The region the Entity started
+         * in is loaded if it never was; otherwise only the Entities in
+         * memory are found.
+         *
+         * @param id Numerical ID of the Entity.
+         * @return Entity with the given ID (null if it is not in memory).
+         */
+        @Override
+        public synchronized Entity getEntity(int id) {
+            if (id >= 0 && id < idCount) {
+                int sector = buffer.getInt(startStart + id * 4);
+                if (sector >= 0 && !loaded.get(sector / REGION_SIZE)) {
+                    region(sector / REGION_SIZE);
+                }
+            }
+            return entities.get(id);
+        }
+
+        /**
+         * Returns the numerical ID of the neighbor of a Sector (based on
+         * direction), read from the mapped file.
+         *
+         * @param id Numerical ID of the Sector.
+         * @param direction Direction of the neighbor.
+         * @return Sector ID at the direction (-1 if there is none).
+         */
+        @Override
+        public int getNeighborId(int id, Direction direction) {
+            return buffer.getInt(neighborStart
+                    + (id * 4 + direction.ordinal()) * 4);
+        }
+
+        /**
+         * Returns the capacity of a Sector, read from the mapped file.
+         *
+         * @param id Numerical ID of the Sector.
+         * @return Sector capacity.
+         */
+        @Override
+        public int getCapacity(int id) {
+            return buffer.getInt(sectorStart + id * SECTOR_RECORD + 8);
+        }
+
+        /**
+         * Returns the number of Sectors in the regions held in memory.
+         *
+         * @return Number of Sectors held in memory.
+         */
+        @Override
+        public synchronized int heldSectors() {
+            int held = 0;
+            for (Region region : resident.values()) {
+                held += region.sectors.length;
+            }
+            return held;
+        }
+
+        /**
+         * Returns the Sectors in the regions held in memory. Iterating over
+         * the regions does not count as using them, so the order they are
+         * evicted in is unchanged.
+         *
+         * @return Snapshot of the Sectors held in memory.
+         */
+        @Override
+        public synchronized List<Sector> getHeldSectors() {
+            List<Sector> held = new ArrayList<>();
+            for (Region region : resident.values()) {
+                held.addAll(Arrays.asList(region.sectors));
+            }
+            return held;
+        }
+
+        /**
+         * Returns whether Sectors may be evicted again (always).
+         *
+         * @return True.
+         */
+        @Override
+        public boolean evicts() {
+            return true;
+        }
+
+        /**
+         * Returns a region held in memory, loading it (and evicting another
+         * one, if too many are held) if it is not.
+         *
+         * @param index Index of the region.
+         * @return Region in memory.
+         */
+        private Region region(int index) {
+            Region region = resident.get(index);
+            if (region == null) {
+                try {
+                    if (resident.size() >= capacity) {
+                        evict();
+                    }
+                    region = load(index);
+                } catch (IOException ioe) {
+                    throw new IllegalStateException(
+                            "Could not use the swap file.", ioe);
+                }
+                resident.put(index, region);
+                loaded.set(index);
+            }
+            return region;
+        }
+
+        /**
+         * Evicts the least recently used region that the Player is not in.
+         *
+         * @throws IOException If the region cannot be written to the swap
+         * file.
+         */
+        private void evict() throws IOException {
+            Player player = world.getPlayer();
+            Sector current = player == null ? null
+                    : player.getCurrentSector();
+            int pinned = current == null ? -1 : current.getId() / REGION_SIZE;
+            Iterator<Map.Entry<Integer, Region>> regions
+                    = resident.entrySet().iterator();
+            while (regions.hasNext()) {
+                Map.Entry<Integer, Region> eldest = regions.next();
+                if (eldest.getKey() != pinned) {
+                    regions.remove();
+                    save(eldest.getKey(), eldest.getValue());
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Writes an evicted region to the swap file (if it changed since it
+         * was loaded) and takes its Entities out of their Sectors.
+         *
+         * @param index Index of the region.
+         * @param region Region being evicted.
+         * @throws IOException If the region cannot be written.
+         */
+        private void save(int index, Region region) throws IOException {
+            boolean changed = false;
+            long rolls = 0;
+            for (Sector sector : region.sectors) {
+                changed |= sector.isDirty();
+                for (Entity entity : sector.getEntities()) {
+                    rolls += entity.getRolls();
+                }
+            }
+            if (changed || rolls != region.rolls) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                for (Sector sector : region.sectors) {
+                    out.writeInt(sector.getOwnState());
+                    List<Entity> contents = sector.getEntities();
+                    out.writeInt(contents.size());
+                    for (Entity entity : contents) {
+                        out.writeInt(entity.getId());
+                        out.writeInt(EntityStore.typeOf(entity));
+                        out.writeUTF(entity.getName());
+                        out.writeUTF(entity.getDescription());
+                        out.writeLong(entity.getRolls());
+                        out.writeInt(entity instanceof Player
+                                ? ((Player) entity).getRespect() : 0);
+                    }
+                }
+                long[] slot = swapped.get(index);
+                if (slot == null || slot[1] < bytes.size()) {
+                    slot = new long[]{swap.length(), bytes.size()};
+                    swapped.put(index, slot);
+                }
+                swap.seek(slot[0]);
+                swap.writeInt(bytes.size());
+                swap.write(bytes.toByteArray());
+            }
+            for (Sector sector : region.sectors) {
+                for (Entity entity : sector.getEntities()) {
+                    entities.remove(entity.getId());
+                    entity.setCurrentSector(null);
+                }
+            }
+        }
+
+        /**
+         * Loads a region from the swap file (if it was saved there) or from
+         * the mapped file.
+         *
+         * @param index Index of the region.
+         * @return Loaded region.
+         * @throws IOException If the region cannot be read from the swap
+         * file.
+         */
+        private Region load(int index) throws IOException {
+            int first = index * REGION_SIZE;
+            Region region = new Region(Math.min(REGION_SIZE,
+                    sectorCount - first));
+            DataInputStream in = null;
+            long[] slot = swapped.get(index);
+            if (slot != null) {
+                swap.seek(slot[0]);
+                byte[] bytes = new byte[swap.readInt()];
+                swap.readFully(bytes);
+                in = new DataInputStream(new ByteArrayInputStream(bytes));
+            }
+            for (int i = 0; i < region.sectors.length; i++) {
+                int id = first + i;
+                int record = sectorStart + id * SECTOR_RECORD;
+                Sector sector = new Sector(string(buffer,
+                        buffer.getInt(record)),
+                        string(buffer, buffer.getInt(record + 4)),
+                        in == null ? buffer.getInt(stateStart + id * 4)
+                                : in.readInt(),
+                        buffer.getInt(record + 8),
+                        OverflowPolicy.values()[buffer.getInt(record + 12)]);
+                Entity[] contents = in == null ? decode(record)
+                        : read(in);
+                for (Entity entity : contents) {
+                    if (sector.addEntity(entity)) {
+                        entity.setCurrentSector(sector);
+                        entities.put(entity.getId(), entity);
+                        region.rolls += entity.getRolls();
+                    }
+                }
+                sector.clearDirty();
+                sector.setWorld(world, id);
+                region.sectors[i] = sector;
+            }
+            return region;
+        }
+
+        /**
+         * Decodes the Entity records of a Sector from the mapped file.
+         *
+         * @param record Offset of the Sector record.
+         * @return Decoded Entities.
+         */
+        private Entity[] decode(int record) {
+            int first = buffer.getInt(record + 16);
+            Entity[] contents = new Entity[buffer.getInt(record + 20)];
+            for (int i = 0; i < contents.length; i++) {
+                int entityRecord = entityStart + (first + i) * ENTITY_RECORD;
+                String name = string(buffer,
+                        buffer.getInt(entityRecord + 8));
+                contents[i] = createEntity(buffer.getInt(entityRecord + 4),
+                        name, archetype(string(buffer,
+                                buffer.getInt(entityRecord + 12))));
+                contents[i].setId(buffer.getInt(entityRecord));
+            }
+            return contents;
+        }
+
+        /**
+         * Reads the Entities of a Sector from a region saved in the swap
+         * file.
+         *
+         * @param in Saved region, positioned at the Sector's Entities.
+         * @return Entities read back.
+         * @throws IOException If the saved region cannot be read.
+         */
+        private Entity[] read(DataInputStream in) throws IOException {
+            Entity[] contents = new Entity[in.readInt()];
+            for (int i = 0; i < contents.length; i++) {
+                int id = in.readInt();
+                int type = in.readInt();
+                String name = in.readUTF();
+                contents[i] = createEntity(type, name,
+                        archetype(in.readUTF()));
+                contents[i].setId(id);
+                contents[i].setRolls(in.readLong());
+                int respect = in.readInt();
+                if (contents[i] instanceof Player) {
+                    ((Player) contents[i]).setRespect(respect);
+                }
+            }
+            return contents;
+        }
+
+        /**
+         * Returns the Archetype shared by the Entities with a description,
+         * creating it the first time the description is seen.
+         *
+         * @param description Description of the Entities.
+         * @return Shared Archetype.
+         */
+        private Archetype archetype(String description) {
+            Archetype archetype = archetypes.get(description);
+            if (archetype == null) {
+                archetype = new Archetype(description);
+                archetypes.put(description, archetype);
+            }
+            return archetype;
+        }
+
+        /**
+         * World the Sectors are supplied to.
+         */
+        private final World world;
+
+        /**
+         * Mapped binary world file.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Largest number of regions kept in memory.
+         */
+        private final int capacity;
+
+        /**
+         * Number of Sectors in the file.
+         */
+        private final int sectorCount;
+
+        /**
+         * Number of Entity IDs in the file.
+         */
+        private final int idCount;
+
+        /**
+         * Offset of the neighbor table.
+         */
+        private final int neighborStart;
+
+        /**
+         * Offset of the temperature of every Sector.
+         */
+        private final int stateStart;
+
+        /**
+         * Offset of the first Sector record.
+         */
+        private final int sectorStart;
+
+        /**
+         * Offset of the first Entity record.
+         */
+        private final int entityStart;
+
+        /**
+         * Offset of the table of the Sector every Entity ID starts in.
+         */
+        private final int startStart;
+
+        /**
+         * File the regions that changed are written to when they are
+         * evicted (deleted when the program exits).
+         */
+        private final RandomAccessFile swap;
+
+        /**
+         * Regions held in memory, by index, in least recently used order.
+         */
+        private final LinkedHashMap<Integer, Region> resident;
+
+        /**
+         * Entities of the regions held in memory, by Entity ID.
+         */
+        private final HashMap<Integer, Entity> entities;
+
+        /**
+         * Offset and size of the slot of every region saved in the swap file,
+         * by region index.
+         */
+        private final HashMap<Integer, long[]> swapped;
+
+        /**
+         * Regions that have been loaded at least once.
+         */
+        private final BitSet loaded;
+
+        /**
+         * Archetypes shared by the Entities, by description.
+         */
+        private final HashMap<String, Archetype> archetypes;
+    }
+}
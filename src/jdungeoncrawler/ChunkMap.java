@@ -0,0 +1,406 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Splits the Sectors of a World into chunks of neighboring Sectors and keeps
+ * track of which chunks are active: the chunks within a number of chunk
+ * steps of a chunk holding a Player. Chunks are grown once, when the map is
+ * built, by a breadth-first search over the neighbor table from the lowest
+ * unassigned Sector ID, so every chunk is a compact region of at most the
+ * chunk size. Simulation and Diffusion only update the active chunks and
+ * catch the others up when they wake.
+ * <p>
+ * The map follows the Players it is given as they move. Sectors added to the
+ * World after the map was built belong to no chunk and are never active.
+ *
+ * @author Daniel Truong
+ */
+public class ChunkMap implements WorldListener {
+
+    /**
+     * ChunkMap class constructor. Follows the World's Player, if it has one.
+     *
+     * @param world World to split into chunks.
+     * @param chunkSize Largest number of Sectors in a chunk.
+     * @param radius Number of chunk steps around a Player's chunk that are
+     * active.
+     */
+    public ChunkMap(World world, int chunkSize, int radius) {
+        if (world.getNeighborTable() == null) {
+            throw new IllegalArgumentException(
+                    "A streamed World cannot be split into chunks.");
+        }
+        this.world = world;
+        this.radius = radius;
+        int size = world.size();
+        chunkOf = new int[size];
+        Arrays.fill(chunkOf, -1);
+        members = new int[size];
+        int[] starts = new int[16];
+        int chunks = 0;
+        int assigned = 0;
+        int[] depth = new int[size];
+        int[] diameters = new int[16];
+        for (int seed = 0; seed < size; seed++) {
+            if (chunkOf[seed] >= 0) {
+                continue;
+            }
+            if (chunks + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                diameters = Arrays.copyOf(diameters, diameters.length * 2);
+            }
+            starts[chunks] = assigned;
+            int head = assigned;
+            int limit = assigned + chunkSize;
+            chunkOf[seed] = chunks;
+            depth[seed] = 0;
+            members[assigned++] = seed;
+            while (head < assigned) {
+                int id = members[head++];
+                for (int i = id * 4; i < id * 4 + 4; i++) {
+                    int neighbor = world.getNeighborTable()[i];
+                    if (assigned < limit && neighbor >= 0
+                            && neighbor < size && chunkOf[neighbor] < 0) {
+                        chunkOf[neighbor] = chunks;
+                        depth[neighbor] = depth[id] + 1;
+                        members[assigned++] = neighbor;
+                    }
+                }
+            }
+            diameters[chunks] = 2 * depth[members[assigned - 1]];
+            chunks++;
+        }
+        starts[chunks] = assigned;
+        this.starts = Arrays.copyOf(starts, chunks + 1);
+        this.diameters = Arrays.copyOf(diameters, chunks);
+        buildAdjacency(chunks);
+        players = new int[chunks];
+        followed = Collections.newSetFromMap(
+                new IdentityHashMap<Player, Boolean>());
+        mark = new int[chunks];
+        level = new int[chunks];
+        search = 0;
+        active = new int[0];
+        stale = true;
+        if (world.getPlayer() != null) {
+            addPlayer(world.getPlayer());
+        }
+        world.addListener(this);
+    }
+
+    /**
+     * Builds the lists of neighboring chunks (chunks joined by at least one
+     * pair of neighboring Sectors).
+     *
+     * @param chunks Number of chunks.
+     */
+    private void buildAdjacency(int chunks) {
+        int[] seen = new int[chunks];
+        Arrays.fill(seen, -1);
+        int[] list = new int[chunks * 4];
+        int count = 0;
+        adjacentStarts = new int[chunks + 1];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            adjacentStarts[chunk] = count;
+            seen[chunk] = chunk;
+            for (int i = starts[chunk]; i < starts[chunk + 1]; i++) {
+                int id = members[i];
+                for (int j = id * 4; j < id * 4 + 4; j++) {
+                    int neighbor = world.getNeighborTable()[j];
+                    if (neighbor < 0 || neighbor >= chunkOf.length) {
+                        continue;
+                    }
+                    int other = chunkOf[neighbor];
+                    if (seen[other] != chunk) {
+                        seen[other] = chunk;
+                        if (count == list.length) {
+                            list = Arrays.copyOf(list, count * 2);
+                        }
+                        list[count++] = other;
+                    }
+                }
+            }
+        }
+        adjacentStarts[chunks] = count;
+        adjacent = Arrays.copyOf(list, count);
+    }
+
+    /**
+     * Starts following a Player, so the chunks around it become active.
+     *
+     * @param player Player to follow.
+     */
+    public synchronized void addPlayer(Player player) {
+        if (!followed.add(player)) {
+            return;
+        }
+        Sector current = player.getCurrentSector();
+        int chunk = current == null ? -1 : getChunk(current.getId());
+        if (chunk >= 0) {
+            if (players[chunk]++ == 0) {
+                stale = true;
+            }
+        }
+    }
+
+    /**
+     * Stops following a Player (when it leaves the World).
+     *
+     * @param player Player to stop following.
+     */
+    public synchronized void removePlayer(Player player) {
+        if (!followed.remove(player)) {
+            return;
+        }
+        Sector current = player.getCurrentSector();
+        int chunk = current == null ? -1 : getChunk(current.getId());
+        if (chunk >= 0 && players[chunk] > 0) {
+            if (--players[chunk] == 0) {
+                stale = true;
+            }
+        }
+    }
+
+    /**
+     * Moves a followed Player between chunks. Moves of other Entities,
+     * including Players the map does not follow, are ignored.
+     *
+     * @param entity Entity that moved.
+     * @param from Sector the Entity left.
+     * @param to Sector the Entity entered (null if it left the World).
+     */
+    @Override
+    public void entityMoved(Entity entity, Sector from, Sector to) {
+        if (!(entity instanceof Player)) {
+            return;
+        }
+        int left = getChunk(from.getId());
+        int entered = to == null ? -1 : getChunk(to.getId());
+        if (left == entered) {
+            return;
+        }
+        synchronized (this) {
+            if (!followed.contains(entity)) {
+                return;
+            }
+            if (left >= 0 && players[left] > 0 && --players[left] == 0) {
+                stale = true;
+            }
+            if (entered >= 0 && players[entered]++ == 0) {
+                stale = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the active chunks in ascending order. The array is only rebuilt
+     * when a chunk gains its first Player or loses its last one, so callers
+     * can tell the active chunks changed when a different array is returned.
+     *
+     * @return IDs of the active chunks.
+     */
+    public synchronized int[] getActive() {
+        if (!stale) {
+            return active;
+        }
+        search++;
+        int[] queue = new int[16];
+        int count = 0;
+        for (int chunk = 0; chunk < players.length; chunk++) {
+            if (players[chunk] > 0) {
+                if (count == queue.length) {
+                    queue = Arrays.copyOf(queue, count * 2);
+                }
+                mark[chunk] = search;
+                level[chunk] = 0;
+                queue[count++] = chunk;
+            }
+        }
+        for (int head = 0; head < count; head++) {
+            int chunk = queue[head];
+            if (level[chunk] == radius) {
+                continue;
+            }
+            for (int i = adjacentStarts[chunk]; i < adjacentStarts[chunk + 1];
+                    i++) {
+                int other = adjacent[i];
+                if (mark[other] != search) {
+                    if (count == queue.length) {
+                        queue = Arrays.copyOf(queue, count * 2);
+                    }
+                    mark[other] = search;
+                    level[other] = level[chunk] + 1;
+                    queue[count++] = other;
+                }
+            }
+        }
+        active = Arrays.copyOf(queue, count);
+        Arrays.sort(active);
+        stale = false;
+        return active;
+    }
+
+    /**
+     * Returns the chunk a Sector belongs to.
+     *
+     * @param sector Numerical ID of the Sector.
+     * @return Chunk ID (-1 if the Sector was added after the map was built).
+     */
+    public int getChunk(int sector) {
+        return sector < chunkOf.length ? chunkOf[sector] : -1;
+    }
+
+    /**
+     * Returns the number of chunks.
+     *
+     * @return Number of chunks.
+     */
+    public int size() {
+        return diameters.length;
+    }
+
+    /**
+     * Returns the number of Sectors in a chunk.
+     *
+     * @param chunk Chunk ID.
+     * @return Number of Sectors.
+     */
+    public int getSectorCount(int chunk) {
+        return starts[chunk + 1] - starts[chunk];
+    }
+
+    /**
+     * Returns an upper bound on the number of moves between two Sectors of a
+     * chunk (twice the depth of the search that grew it).
+     *
+     * @param chunk Chunk ID.
+     * @return Largest number of moves across the chunk.
+     */
+    public int getDiameter(int chunk) {
+        return diameters[chunk];
+    }
+
+    /**
+     * Returns the position of a chunk's first Sector in the member table.
+     *
+     * @param chunk Chunk ID.
+     * @return Index into the member table.
+     */
+    int getStart(int chunk) {
+        return starts[chunk];
+    }
+
+    /**
+     * Returns the Sector IDs of every chunk, one chunk after another (chunk c
+     * holds the entries from getStart(c) to getStart(c + 1)).
+     *
+     * @return Member table.
+     */
+    int[] getMembers() {
+        return members;
+    }
+
+    /**
+     * World split into chunks.
+     */
+    private final World world;
+
+    /**
+     * Number of chunk steps around a Player's chunk that are active.
+     */
+    private final int radius;
+
+    /**
+     * Chunk of every Sector, indexed by Sector ID.
+     */
+    private final int[] chunkOf;
+
+    /**
+     * Sector IDs of every chunk, one chunk after another.
+     */
+    private final int[] members;
+
+    /**
+     * Position of every chunk's first Sector in the member table (plus one
+     * entry past the last chunk).
+     */
+    private final int[] starts;
+
+    /**
+     * Largest number of moves across every chunk.
+     */
+    private final int[] diameters;
+
+    /**
+     * Neighboring chunks of every chunk, one chunk after another.
+     */
+    private int[] adjacent;
+
+    /**
+     * Position of every chunk's first neighbor in the adjacency table (plus
+     * one entry past the last chunk).
+     */
+    private int[] adjacentStarts;
+
+    /**
+     * Number of followed Players in every chunk.
+     */
+    private final int[] players;
+
+    /**
+     * Players the map follows (compared by identity).
+     */
+    private final Set<Player> followed;
+
+    /**
+     * Search number of the last search that reached every chunk.
+     */
+    private final int[] mark;
+
+    /**
+     * Chunk steps from the nearest Player's chunk in the current search.
+     */
+    private final int[] level;
+
+    /**
+     * Number of the current search.
+     */
+    private int search;
+
+    /**
+     * Active chunks in ascending order.
+     */
+    private int[] active;
+
+    /**
+     * True if the active chunks must be found again.
+     */
+    private boolean stale;
+}
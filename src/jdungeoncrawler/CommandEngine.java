@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs scripted game sessions without any console input or output. Every
+ * session plays on its own copy-on-write fork of a loaded World, so many
+ * sessions can run in parallel from one shared template.
+ *
+ * @author Daniel Truong
+ */
+public class CommandEngine {
+
+    /**
+     * CommandEngine class constructor (one thread per available processor).
+     *
+     * @param template World every session starts from.
+     */
+    public CommandEngine(World template) {
+        this(template, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * CommandEngine class constructor.
+     *
+     * @param template World every session starts from.
+     * @param threads Number of sessions to run at the same time.
+     */
+    public CommandEngine(World template, int threads) {
+        this.template = template;
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Runs one session, carrying out the commands in order until the end of
+     * the script or a "quit" command.
+     *
+     * @param commands Commands to carry out.
+     * @return Response to each command (null for commands after "quit").
+     */
+    public String[] run(String[] commands) {
+        Player player = template.fork().getPlayer();
+        String[] results = new String[commands.length];
+        for (int i = 0; i < commands.length; i++) {
+            results[i] = player.execute(commands[i]);
+            if (commands[i].equalsIgnoreCase("quit")) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs one independent session per script in parallel.
+     *
+     * @param scripts Commands of each session.
+     * @return Responses of each session, in the same order as the scripts.
+     * @throws InterruptedException If interrupted while waiting for the
+     * sessions to finish.
+     */
+    public List<String[]> runAll(List<String[]> scripts)
+            throws InterruptedException {
+        List<Callable<String[]>> sessions = new ArrayList<>();
+        for (final String[] script : scripts) {
+            sessions.add(new Callable<String[]>() {
+                @Override
+                public String[] call() {
+                    return run(script);
+                }
+            });
+        }
+        List<String[]> results = new ArrayList<>();
+        try {
+            for (Future<String[]> session : pool.invokeAll(sessions)) {
+                results.add(session.get());
+            }
+        } catch (ExecutionException ee) {
+            throw new IllegalStateException("Session failed.", ee.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Stops the threads used to run sessions.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * World every session starts from.
+     */
+    private final World template;
+
+    /**
+     * Threads running the sessions.
+     */
+    private final ExecutorService pool;
+}
@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a command carried out by a Player, so latency
+ * spikes in a recording can be matched with the commands that caused them.
+ *
+ * @author Daniel Truong
+ */
+@Name("jdungeoncrawler.Command")
+@Label("Command")
+@Category("JDungeonCrawler")
+@Description("A command carried out by a Player")
+class CommandEvent extends jdk.jfr.Event {
+
+    /**
+     * Command carried out.
+     */
+    @Label("Command")
+    String command;
+
+    /**
+     * Name of the Player.
+     */
+    @Label("Player")
+    String player;
+
+    /**
+     * Name of the Sector the Player ended up in.
+     */
+    @Label("Sector")
+    String sector;
+
+    /**
+     * Number of Entities in that Sector.
+     */
+    @Label("Entities")
+    int entities;
+}
@@ -0,0 +1,481 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Spreads heat between neighboring Sectors. Every tick each Sector exchanges
+ * a fraction of its temperature difference with each of its neighbors, then
+ * drifts towards the ambient temperature. The new temperatures are computed
+ * from the World's temperature table into a second table in parallel slices
+ * of Sector IDs, and the two tables are swapped once every slice is done, so
+ * every Sector is updated from the same tick's temperatures.
+ * <p>
+ * Given a ChunkMap, only the Sectors of the active chunks (near a Player) are
+ * computed, and their new temperatures are copied back into the World's
+ * table instead of swapping the tables, so a tick costs as much as the active
+ * area rather than the whole World. Sleeping chunks keep their temperatures;
+ * when a chunk wakes up, the ambient drift it missed is applied in closed
+ * form (the difference to the ambient temperature shrinks by a factor of
+ * 1 - decay per tick slept), while the exchange between its Sectors is not
+ * replayed.
+ * <p>
+ * At the end of a tick, the Sectors whose temperature (as rounded by
+ * Sector.getState()) changed are marked dirty and handed to the WorldListeners
+ * together, so a SaveFile or a Journal keeps the diffused temperatures. A tick
+ * should not overlap with commands that heat or cool a Sector, since (without
+ * a ChunkMap) the table they write to is replaced at the end of the tick.
+ *
+ * @author Daniel Truong
+ */
+public class Diffusion {
+
+    /**
+     * Diffusion class constructor (one thread per available processor).
+     *
+     * @param world World to spread heat through.
+     * @param rate Fraction of the temperature difference exchanged with each
+     * neighbor per tick (0 to 0.25).
+     * @param decay Fraction of the difference to the ambient temperature lost
+     * per tick (0 to 1).
+     * @param ambient Temperature every Sector drifts towards.
+     */
+    public Diffusion(World world, float rate, float decay, float ambient) {
+        this(world, rate, decay, ambient,
+                Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Diffusion class constructor.
+     *
+     * @param world World to spread heat through.
+     * @param rate Fraction of the temperature difference exchanged with each
+     * neighbor per tick (0 to 0.25).
+     * @param decay Fraction of the difference to the ambient temperature lost
+     * per tick (0 to 1).
+     * @param ambient Temperature every Sector drifts towards.
+     * @param threads Number of threads to compute with.
+     */
+    public Diffusion(World world, float rate, float decay, float ambient,
+            int threads) {
+        this(world, rate, decay, ambient, threads, null);
+    }
+
+    /**
+     * Diffusion class constructor.
+     *
+     * @param world World to spread heat through.
+     * @param rate Fraction of the temperature difference exchanged with each
+     * neighbor per tick (0 to 0.25).
+     * @param decay Fraction of the difference to the ambient temperature lost
+     * per tick (0 to 1).
+     * @param ambient Temperature every Sector drifts towards.
+     * @param threads Number of threads to compute with.
+     * @param chunks Chunks of the World, to only compute the ones near a
+     * Player (null to compute every Sector).
+     */
+    public Diffusion(World world, float rate, float decay, float ambient,
+            int threads, ChunkMap chunks) {
+        if (world.getTemperatures() == null) {
+            throw new IllegalArgumentException(
+                    "Heat cannot diffuse through a forked or streamed World.");
+        }
+        if (rate < 0 || rate > 0.25f || decay < 0 || decay > 1) {
+            throw new IllegalArgumentException(
+                    "Diffusion rate must be 0 to 0.25 and decay 0 to 1.");
+        }
+        this.world = world;
+        this.rate = rate;
+        this.decay = decay;
+        this.ambient = ambient;
+        this.chunks = chunks;
+        pool = new ForkJoinPool(threads);
+        next = new float[world.getTemperatures().length];
+        active = new int[0];
+        awake = chunks == null ? null : new byte[chunks.size()];
+        sleptAt = chunks == null ? null : new long[chunks.size()];
+        grain = chunks == null ? SLICE_SIZE : Math.max(1,
+                (int) ((long) SLICE_SIZE * chunks.size()
+                / Math.max(1, world.size())));
+        ticks = 0;
+        changes = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Advances the diffusion by one tick.
+     */
+    public void tick() {
+        float[] current = world.getTemperatures();
+        if (next.length != current.length) {
+            next = new float[current.length];
+        }
+        int[] neighbors = world.getNeighborTable();
+        if (chunks == null) {
+            pool.invoke(new Slice(current, next, neighbors, false, 0,
+                    world.size()));
+            world.setTemperatures(next);
+            next = current;
+        } else {
+            wake(current);
+            pool.invoke(new Slice(current, next, neighbors, false, 0,
+                    active.length));
+            pool.invoke(new Slice(current, next, neighbors, true, 0,
+                    active.length));
+        }
+        ticks++;
+        int size = 0;
+        for (int[] ids : changes) {
+            size += ids.length;
+        }
+        if (size > 0) {
+            int[] changed = new int[size];
+            int[] ids;
+            size = 0;
+            while ((ids = changes.poll()) != null) {
+                System.arraycopy(ids, 0, changed, size, ids.length);
+                size += ids.length;
+            }
+            Arrays.sort(changed);
+            world.fireTemperaturesChanged(changed);
+        }
+    }
+
+    /**
+     * Takes the current active chunks, puts the chunks that are no longer
+     * active to sleep and catches up the chunks that woke up.
+     *
+     * @param current Temperatures of the current tick.
+     */
+    private void wake(float[] current) {
+        int[] now = chunks.getActive();
+        if (now == active) {
+            return;
+        }
+        int[] members = chunks.getMembers();
+        Changes woken = new Changes();
+        for (int chunk : now) {
+            if (awake[chunk] == ASLEEP) {
+                float factor = (float) Math.pow(1 - decay,
+                        ticks - sleptAt[chunk]);
+                for (int i = chunks.getStart(chunk);
+                        i < chunks.getStart(chunk + 1); i++) {
+                    int id = members[i];
+                    float temperature = ambient + (current[id] - ambient)
+                            * factor;
+                    woken.compare(id, current[id], temperature);
+                    current[id] = temperature;
+                }
+            }
+            awake[chunk] = STAYING;
+        }
+        woken.publish();
+        for (int chunk : active) {
+            if (awake[chunk] == AWAKE) {
+                awake[chunk] = ASLEEP;
+                sleptAt[chunk] = ticks;
+            }
+        }
+        for (int chunk : now) {
+            awake[chunk] = AWAKE;
+        }
+        active = now;
+    }
+
+    /**
+     * Computes the next temperature of a Sector.
+     *
+     * @param current Temperatures of the current tick.
+     * @param target Table to write the next temperatures to.
+     * @param neighbors Neighbor table of the World.
+     * @param id Numerical ID of the Sector.
+     */
+    private void diffuse(float[] current, float[] target, int[] neighbors,
+            int id) {
+        float temperature = current[id];
+        float flow = 0;
+        int base = id * 4;
+        for (int i = base; i < base + 4; i++) {
+            int neighbor = neighbors[i];
+            if (neighbor >= 0) {
+                flow += current[neighbor] - temperature;
+            }
+        }
+        temperature += rate * flow;
+        target[id] = temperature + decay * (ambient - temperature);
+    }
+
+    /**
+     * Returns the number of ticks the diffusion has run.
+     *
+     * @return Number of ticks.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Stops the threads of the diffusion.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Range of work done by one task (Sector IDs, or positions in the list of
+     * active chunks), split in half until it is small enough to do directly.
+     */
+    private class Slice extends RecursiveAction {
+
+        /**
+         * Slice class constructor.
+         *
+         * @param current Temperatures of the current tick.
+         * @param target Table to write the next temperatures to.
+         * @param neighbors Neighbor table of the World.
+         * @param copy True to copy the computed temperatures of the active
+         * chunks back into the current table, False to compute them.
+         * @param low First Sector ID (or active chunk position) of the range.
+         * @param high Sector ID (or active chunk position) after the last one
+         * of the range.
+         */
+        Slice(float[] current, float[] target, int[] neighbors, boolean copy,
+                int low, int high) {
+            this.current = current;
+            this.target = target;
+            this.neighbors = neighbors;
+            this.copy = copy;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low > grain) {
+                int middle = (low + high) >>> 1;
+                invokeAll(new Slice(current, target, neighbors, copy, low,
+                        middle), new Slice(current, target, neighbors, copy,
+                        middle, high));
+            } else if (chunks == null) {
+                Changes changed = new Changes();
+                for (int id = low; id < high; id++) {
+                    diffuse(current, target, neighbors, id);
+                    changed.compare(id, current[id], target[id]);
+                }
+                changed.publish();
+            } else {
+                int[] members = chunks.getMembers();
+                Changes changed = new Changes();
+                for (int i = low; i < high; i++) {
+                    for (int j = chunks.getStart(active[i]);
+                            j < chunks.getStart(active[i] + 1); j++) {
+                        int id = members[j];
+                        if (copy) {
+                            changed.compare(id, current[id], target[id]);
+                            current[id] = target[id];
+                        } else {
+                            diffuse(current, target, neighbors, id);
+                        }
+                    }
+                }
+                changed.publish();
+            }
+        }
+
+        /**
+         * Serialization version of the task.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Temperatures of the current tick.
+         */
+        private final float[] current;
+
+        /**
+         * Table to write the next temperatures to.
+         */
+        private final float[] target;
+
+        /**
+         * Neighbor table of the World.
+         */
+        private final int[] neighbors;
+
+        /**
+         * True to copy the computed temperatures back, False to compute them.
+         */
+        private final boolean copy;
+
+        /**
+         * First Sector ID (or active chunk position) of the range.
+         */
+        private final int low;
+
+        /**
+         * Sector ID (or active chunk position) after the last one of the
+         * range.
+         */
+        private final int high;
+    }
+
+    /**
+     * IDs of the Sectors whose rounded temperature changed, collected by one
+     * task (or by waking chunks up).
+     */
+    private class Changes {
+
+        /**
+         * Changes class constructor.
+         */
+        Changes() {
+            ids = new int[16];
+            count = 0;
+        }
+
+        /**
+         * Records a Sector if its rounded temperature changed.
+         *
+         * @param id Numerical ID of the Sector.
+         * @param before Temperature before the change.
+         * @param after Temperature after the change.
+         */
+        void compare(int id, float before, float after) {
+            if (Math.round(before) != Math.round(after)) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = id;
+            }
+        }
+
+        /**
+         * Hands the recorded IDs over to the end of the tick.
+         */
+        void publish() {
+            if (count > 0) {
+                changes.add(Arrays.copyOf(ids, count));
+            }
+        }
+
+        /**
+         * IDs recorded so far.
+         */
+        private int[] ids;
+
+        /**
+         * Number of IDs recorded so far.
+         */
+        private int count;
+    }
+
+    /**
+     * Largest number of Sectors computed by a single task.
+     */
+    private static final int SLICE_SIZE = 16384;
+
+    /**
+     * State of a chunk that is asleep.
+     */
+    private static final byte ASLEEP = 0;
+
+    /**
+     * State of a chunk that is awake.
+     */
+    private static final byte AWAKE = 1;
+
+    /**
+     * State of a chunk that stays or becomes awake (while the active chunks
+     * are being taken).
+     */
+    private static final byte STAYING = 2;
+
+    /**
+     * World to spread heat through.
+     */
+    private final World world;
+
+    /**
+     * Fraction of the temperature difference exchanged with each neighbor.
+     */
+    private final float rate;
+
+    /**
+     * Fraction of the difference to the ambient temperature lost per tick.
+     */
+    private final float decay;
+
+    /**
+     * Temperature every Sector drifts towards.
+     */
+    private final float ambient;
+
+    /**
+     * Chunks of the World (null to compute every Sector).
+     */
+    private final ChunkMap chunks;
+
+    /**
+     * Threads that compute the slices.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Table the next tick's temperatures are written to.
+     */
+    private float[] next;
+
+    /**
+     * Active chunks of the current tick, in ascending order.
+     */
+    private int[] active;
+
+    /**
+     * State of every chunk (asleep or awake).
+     */
+    private final byte[] awake;
+
+    /**
+     * Tick every chunk last went to sleep at.
+     */
+    private final long[] sleptAt;
+
+    /**
+     * Largest range of work done by a single task.
+     */
+    private final int grain;
+
+    /**
+     * Number of ticks the diffusion has run.
+     */
+    private long ticks;
+
+    /**
+     * IDs of the Sectors changed by the current tick, one array per task.
+     */
+    private final ConcurrentLinkedQueue<int[]> changes;
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+/**
+ * Directions a Sector can have neighbors in.
+ *
+ * @author Daniel Truong
+ */
+public enum Direction {
+
+    /**
+     * Towards the top of the map.
+     */
+    NORTH,
+    /**
+     * Towards the bottom of the map.
+     */
+    SOUTH,
+    /**
+     * Towards the right of the map.
+     */
+    EAST,
+    /**
+     * Towards the left of the map.
+     */
+    WEST;
+
+    /**
+     * Returns the direction pointing the opposite way.
+     *
+     * @return Opposite direction.
+     */
+    public Direction opposite() {
+        switch (this) {
+            case NORTH:
+                return SOUTH;
+            case SOUTH:
+                return NORTH;
+            case EAST:
+                return WEST;
+            default:
+                return EAST;
+        }
+    }
+
+    /**
+     * Returns the direction matching a name (north, south, east, west).
+     *
+     * @param name Name of the direction.
+     * @return Matching direction (null if the name is not a direction).
+     */
+    public static Direction fromName(String name) {
+        switch (name) {
+            case "north":
+                return NORTH;
+            case "south":
+                return SOUTH;
+            case "east":
+                return EAST;
+            case "west":
+                return WEST;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the direction at a numerical representation.
+     *
+     * @param direction Numerical representation of the direction (0 = north,
+     * 1 = south, 2 = east, 3 = west).
+     * @return Matching direction.
+     */
+    public static Direction fromIndex(int direction) {
+        return VALUES[direction];
+    }
+
+    /**
+     * Returns the lowercase name of the direction (Overrides class
+     * implementation of the toString() method.
+     *
+     * @return Direction name.
+     */
+    @Override
+    public String toString() {
+        return NAMES[ordinal()];
+    }
+
+    /**
+     * Cached copy of values(), so lookups and loops over the directions do
+     * not allocate (it must never be modified).
+     */
+    static final Direction[] VALUES = values();
+
+    /**
+     * Lowercase names of the directions, in declaration order.
+     */
+    private static final String[] NAMES = {"north", "south", "east", "west"};
+}
@@ -31,13 +31,38 @@ package jdungeoncrawler;
 public class Enemy extends Entity {
 
     /**
-     * Enemy class constructor.
+     * Enemy class constructor. Enemies seek cold Sectors: a disturbed Enemy
+     * moves to its coldest neighbor, and stays put if no neighbor is colder
+     * than its Sector.
      *
      * @param name Name given to the Enemy.
      * @param description Description given to the Enemy.
      */
     public Enemy(String name, String description) {
-        super(name, description);
+        this(name, new Archetype(description));
+    }
+
+    /**
+     * Enemy class constructor for an Enemy of a shared archetype.
+     *
+     * @param name Name given to the Enemy.
+     * @param archetype Archetype holding the Enemy's description.
+     */
+    public Enemy(String name, Archetype archetype) {
+        super(name, archetype);
+        setBehavior(TemperatureSeeker.COLD);
+    }
+
+    /**
+     * Returns a new Enemy with the same name, description and Behavior.
+     *
+     * @return Copy of the Enemy.
+     */
+    @Override
+    public Entity copy() {
+        Enemy copy = new Enemy(getName(), getArchetype());
+        copy.setBehavior(getBehavior());
+        return copy;
     }
 
     /**
@@ -45,16 +70,22 @@ public class Enemy extends Entity {
      * if the room temperature was increased, increases otherwise.
      *
      * @param clean True if the Player heated the room, False otherwise.
-     * @param player Player Entity being affected.
+     * @return Change in the Player's respect.
+     */
+    @Override
+    public int getRespectChange(boolean clean) {
+        return clean ? -1 : 1;
+    }
+
+    /**
+     * Enemy tries to leave the Sector when the Player heats it.
+     *
+     * @param clean True if the Player heated the room, False otherwise.
+     * @return True if the room was heated, False otherwise.
      */
     @Override
-    public void react(boolean clean, Player player) {
-        if (!clean) {
-            player.increaseRespect();
-        } else {
-            player.descreaseRespect();
-            attemptMove();
-        }
+    public boolean isDisturbed(boolean clean) {
+        return clean;
     }
 
 }
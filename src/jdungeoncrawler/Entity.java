@@ -23,6 +23,8 @@
  */
 package jdungeoncrawler;
 
+import java.util.List;
+
 /**
  * Holds reference to live cast (Ally, Enemy, Player) that will interact with
  * the game world.
@@ -32,49 +34,62 @@ package jdungeoncrawler;
 public abstract class Entity {
 
     /**
-     * Entity class constructor.
+     * Entity class constructor (the Entity gets an archetype of its own).
      *
      * @param name Name given to the Entity.
      * @param description Description given to the Entity.
      */
     public Entity(String name, String description) {
+        this(name, new Archetype(description));
+    }
+
+    /**
+     * Entity class constructor for an Entity of a shared archetype. The
+     * Entity walks at random until it is given another Behavior (Allies and
+     * Enemies seek temperatures instead).
+     *
+     * @param name Name given to the Entity.
+     * @param archetype Archetype holding the Entity's description.
+     */
+    public Entity(String name, Archetype archetype) {
         this.name = name;
-        this.description = description;
+        this.archetype = archetype;
+        id = -1;
+        rolls = 0;
+        behavior = RandomWalk.INSTANCE;
     }
 
     /**
-     * Orders Entity to attempt to move to a random neighboring Sector.
+     * Orders Entity to attempt to move to the neighboring Sector its Behavior
+     * chooses.
      */
     public void attemptMove() {
-        int randomNumber = (int) (Math.random() * 4);
-        switch (randomNumber) {
-            case 0:
-                try {
-                    move(getCurrentSector().getNeighbor("north"));
-                } catch (NullPointerException npe) {
-                }
-                break;
-            case 1:
-                try {
-                    move(getCurrentSector().getNeighbor("south"));
-                } catch (NullPointerException npe) {
-                }
-                break;
-            case 2:
-                try {
-                    move(getCurrentSector().getNeighbor("east"));
-                } catch (NullPointerException npe) {
-                }
-                break;
-            default:
-                try {
-                    move(getCurrentSector().getNeighbor("west"));
-                } catch (NullPointerException npe) {
-                }
-                break;
+        Sector current = getCurrentSector();
+        int target = behavior.decide(current.getWorld(), current.getId(),
+                nextRoll());
+        if (target >= 0) {
+            move(current.getWorld().getSector(target));
         }
     }
 
+    /**
+     * Sets the Behavior that decides where the Entity moves on its own.
+     *
+     * @param behavior Behavior of the Entity.
+     */
+    public void setBehavior(Behavior behavior) {
+        this.behavior = behavior;
+    }
+
+    /**
+     * Returns the Behavior that decides where the Entity moves on its own.
+     *
+     * @return Behavior of the Entity.
+     */
+    public Behavior getBehavior() {
+        return behavior;
+    }
+
     /**
      * Increase the temperature of the Sector (if it's not already hot).
      *
@@ -83,9 +98,7 @@ public abstract class Entity {
     public void heatSector(Player player) {
         if (getCurrentSector().getState() < 4) {
             getCurrentSector().increaseTemp();
-            for (int i = 0; i < getCurrentSector().getEntities().size(); i++) {
-                getCurrentSector().getEntities().get(i).react(true, player);
-            }
+            dispatchReactions(true, player);
         }
     }
 
@@ -97,21 +110,298 @@ public abstract class Entity {
     public void coolSector(Player player) {
         if (getCurrentSector().getState() > 1) {
             getCurrentSector().decreaseTemp();
-            for (int i = 0; i < getCurrentSector().getEntities().size(); i++) {
-                getCurrentSector().getEntities().get(i).react(false, player);
+            dispatchReactions(false, player);
+        }
+    }
+
+    /**
+     * Makes every Entity in the current Sector react to a temperature change
+     * in two phases. The reactions of all the Entities are first collected
+     * into a single change of respect, which the Player receives once, and
+     * the Entities disturbed by the change are moved afterwards (in name
+     * order), so an Entity leaving the Sector cannot cause another one to be
+     * skipped or to react twice.
+     *
+     * @param heat True if the Sector was heated, False if it was cooled.
+     * @param player Player object that will be affected.
+     */
+    private void dispatchReactions(boolean heat, Player player) {
+        ReactionEvent event = new ReactionEvent();
+        event.begin();
+        long start = Metrics.ENABLED ? Metrics.REACTION_DISPATCH.start() : 0;
+        Sector sector = getCurrentSector();
+        List<Entity> entities = sector.getEntities();
+        Entity[] movers = new Entity[entities.size()];
+        int count = 0;
+        int respect = 0;
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            respect += entity.getRespectChange(heat);
+            if (entity.isDisturbed(heat)) {
+                movers[count++] = entity;
+            }
+        }
+        player.changeRespect(respect);
+        for (int i = 0; i < count; i++) {
+            if (movers[i].getCurrentSector() == sector) {
+                movers[i].attemptMove();
+            }
+        }
+        if (Metrics.ENABLED) {
+            Metrics.REACTIONS.add(entities.size());
+            Metrics.REACTION_DISPATCH.stop(start);
+        }
+        if (event.shouldCommit()) {
+            event.sector = sector.getName();
+            event.heated = heat;
+            event.entities = entities.size();
+            event.movers = count;
+            event.respect = respect;
+            event.commit();
+        }
+    }
+
+    /**
+     * Moves Entity to a new Sector. If the Sector is full, its overflow policy
+     * decides whether the move is refused, queued until there is room (for
+     * Entities that wait for room), or spilled into one of its neighbors.
+     *
+     * @param nextSector Sector the Entity will move to next.
+     * @return True if the Entity moved, False if it stayed where it was.
+     */
+    public boolean move(Sector nextSector) {
+        nextSector = own(nextSector);
+        if (moveTo(nextSector)) {
+            return true;
+        }
+        switch (nextSector.getOverflowPolicy()) {
+            case QUEUE:
+                if (waitsForRoom()) {
+                    nextSector.enqueue(this);
+                }
+                return false;
+            case SPILL:
+                for (Direction direction : Direction.VALUES) {
+                    Sector neighbor = own(nextSector.getNeighbor(direction));
+                    if (neighbor != null && neighbor != getCurrentSector()
+                            && moveTo(neighbor)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Takes the Entity out of the World (e.g. when a Player disconnects). It
+     * leaves its Sector the way a move does (the listeners are told, with no
+     * Sector entered, and the Sector is marked as changed), stops waiting
+     * for the Sectors around it, and the Entities queued for its Sector are
+     * let in.
+     */
+    public void leave() {
+        Sector previous;
+        while (true) {
+            previous = getCurrentSector();
+            if (previous == null) {
+                return;
+            }
+            synchronized (previous) {
+                if (getCurrentSector() == previous) {
+                    previous.removeEntity(this);
+                    setCurrentSector(null);
+                    World world = previous.getWorld();
+                    if (world != null) {
+                        if (id >= 0 && world.getStore() != null) {
+                            world.getStore().setSector(id, -1);
+                        }
+                        world.fireEntityMoved(this, previous, null);
+                    }
+                    break;
+                }
+            }
+        }
+        if (previous.getWorld() != null) {
+            for (Direction direction : Direction.VALUES) {
+                Sector neighbor = previous.getNeighbor(direction);
+                if (neighbor != null) {
+                    neighbor.withdraw(this);
+                }
             }
         }
+        admitWaiting(previous);
+    }
+
+    /**
+     * Returns the copy of a Sector that belongs to the Entity's World. A
+     * forked World hands out the Sectors of the World it was forked from
+     * until it changes them, so the fork makes its own copy of such a Sector
+     * before the Entity moves into it.
+     *
+     * @param sector Sector the Entity may move to (null for none).
+     * @return Sector of the Entity's World with the same ID.
+     */
+    private Sector own(Sector sector) {
+        Sector current = getCurrentSector();
+        if (sector == null || current == null || current.getWorld() == null
+                || sector.getWorld() == current.getWorld()) {
+            return sector;
+        }
+        return current.getWorld().ownSector(sector.getId());
+    }
+
+    /**
+     * Moves Entity to a new Sector if it has room, without spilling it into a
+     * neighbor or letting in the Entities queued for the Sector it left (the
+     * Simulation does both later, in a fixed order). If the Sector is full
+     * and its overflow policy is QUEUE, the Entity is put in line as usual.
+     *
+     * @param nextSector Sector the Entity will move to next.
+     * @return Sector the Entity left (null if it stayed where it was).
+     */
+    Sector advance(Sector nextSector) {
+        nextSector = own(nextSector);
+        Sector previous = step(nextSector);
+        if (previous == null && waitsForRoom()
+                && nextSector.getOverflowPolicy() == OverflowPolicy.QUEUE) {
+            nextSector.enqueue(this);
+        }
+        return previous;
+    }
+
+    /**
+     * Moves Entity to a new Sector if it has room, then lets in the Entities
+     * queued for the Sector it left.
+     *
+     * @param nextSector Sector the Entity will move to next.
+     * @return True if the Entity moved, False if the Sector is full.
+     */
+    private boolean moveTo(Sector nextSector) {
+        Sector previous = step(nextSector);
+        if (previous == null) {
+            return false;
+        }
+        admitWaiting(previous);
+        return true;
+    }
+
+    /**
+     * Moves Entity to a new Sector if it has room, and records the move.
+     *
+     * @param nextSector Sector the Entity will move to next.
+     * @return Sector the Entity left (null if the new Sector is full).
+     */
+    private Sector step(Sector nextSector) {
+        MoveEvent event = new MoveEvent();
+        event.begin();
+        Sector previous = transfer(nextSector);
+        if (previous != null && previous != nextSector
+                && event.shouldCommit()) {
+            event.entity = getName();
+            event.from = previous.getName();
+            event.to = nextSector.getName();
+            event.entities = nextSector.entityCount();
+            event.commit();
+        }
+        return previous;
     }
 
     /**
-     * Moves Entity to a new Sector.
+     * Moves Entity to a new Sector if it has room. Both Sectors are locked
+     * (in a fixed order) while the capacity is checked and the Entity is
+     * moved, so other threads never see the Entity in both or neither of
+     * them.
      *
      * @param nextSector Sector the Entity will move to next.
+     * @return Sector the Entity left (null if the new Sector is full).
+     */
+    private Sector transfer(Sector nextSector) {
+        while (true) {
+            Sector previous = getCurrentSector();
+            if (previous == nextSector) {
+                return previous;
+            }
+            Sector first = previous.locksBefore(nextSector) ? previous
+                    : nextSector;
+            Sector second = first == previous ? nextSector : previous;
+            synchronized (first) {
+                synchronized (second) {
+                    if (getCurrentSector() == previous) {
+                        if (!nextSector.addEntity(this)) {
+                            return null;
+                        }
+                        previous.removeEntity(this);
+                        setCurrentSector(nextSector);
+                        if (Metrics.ENABLED) {
+                            Metrics.MOVES.increment();
+                        }
+                        if (nextSector.getWorld() != null) {
+                            nextSector.getWorld().fireEntityMoved(this,
+                                    previous, nextSector);
+                        }
+                        return previous;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets queued Entities into a Sector that an Entity just left. Every
+     * Entity let in frees a spot in the Sector it came from, so the chain is
+     * followed until a Sector has nobody waiting.
+     *
+     * @param freed Sector that has room again.
+     */
+    static void admitWaiting(Sector freed) {
+        while (freed != null) {
+            Entity waiting = freed.pollWaiting();
+            if (waiting == null) {
+                return;
+            }
+            Sector source = waiting.getCurrentSector();
+            if (source == null || !source.isNeighbor(freed)) {
+                continue;
+            }
+            Sector left = waiting.transfer(freed);
+            if (left == null) {
+                freed.requeue(waiting);
+                return;
+            }
+            freed = left;
+        }
+    }
+
+    /**
+     * Draws the next random number of the Entity's own stream from its
+     * World's source of random numbers, so the Entity rolls the same numbers
+     * for the same seed whichever thread moves it.
+     *
+     * @return Random number (any int value).
+     */
+    int nextRoll() {
+        return getCurrentSector().getWorld().getRandom().roll(id, rolls++);
+    }
+
+    /**
+     * Returns the number of random numbers the Entity has drawn.
+     *
+     * @return Number of rolls.
+     */
+    long getRolls() {
+        return rolls;
+    }
+
+    /**
+     * Sets the number of random numbers the Entity has drawn (used when the
+     * Entity is read back from disk).
+     *
+     * @param rolls Number of rolls.
      */
-    public void move(Sector nextSector) {
-        nextSector.addEntity(this);
-        getCurrentSector().removeEntity(this);
-        setCurrentSector(nextSector);
+    void setRolls(long rolls) {
+        this.rolls = rolls;
     }
 
     /**
@@ -121,15 +411,64 @@ public abstract class Entity {
      */
     public void setCurrentSector(Sector currentSector) {
         this.currentSector = currentSector;
+        if (currentSector != null && id >= 0
+                && currentSector.getWorld() != null) {
+            EntityStore store = currentSector.getWorld().getStore();
+            if (store != null) {
+                store.setSector(id, currentSector.getId());
+            }
+        }
     }
 
     /**
-     * Define reactions for each subclass (Ally, Enemy, Player)
+     * Returns a new Entity of the same subclass with the same name and
+     * description, not yet placed in any Sector.
+     *
+     * @return Copy of the Entity.
+     */
+    public abstract Entity copy();
+
+    /**
+     * Reacts to a temperature change in the Entity's Sector on its own:
+     * changes the Player's respect, then moves if the Entity is disturbed.
      *
      * @param heat True, if the Entity initiated the heating action.
      * @param player Player object that will be affected.
      */
-    public abstract void react(boolean heat, Player player);
+    public void react(boolean heat, Player player) {
+        player.changeRespect(getRespectChange(heat));
+        if (isDisturbed(heat)) {
+            attemptMove();
+        }
+    }
+
+    /**
+     * Define the change in the Player's respect caused by each subclass
+     * (Ally, Enemy, Player) when its Sector is heated or cooled.
+     *
+     * @param heat True if the Sector was heated, False if it was cooled.
+     * @return Change in the Player's respect.
+     */
+    public abstract int getRespectChange(boolean heat);
+
+    /**
+     * Define whether each subclass (Ally, Enemy, Player) tries to leave its
+     * Sector when it is heated or cooled.
+     *
+     * @param heat True if the Sector was heated, False if it was cooled.
+     * @return True if the Entity tries to move, False otherwise.
+     */
+    public abstract boolean isDisturbed(boolean heat);
+
+    /**
+     * Returns whether the Entity waits in line for a full Sector with the
+     * QUEUE policy, and moves in on its own once there is room.
+     *
+     * @return True (subclasses may refuse).
+     */
+    protected boolean waitsForRoom() {
+        return true;
+    }
 
     /**
      * Return the Sector that the Entity is currently in.
@@ -140,13 +479,41 @@ public abstract class Entity {
         return currentSector;
     }
 
+    /**
+     * Sets the numerical ID of the Entity (assigned by the World it is
+     * registered with).
+     *
+     * @param id Numerical ID of the Entity.
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the numerical ID of the Entity.
+     *
+     * @return Entity ID (-1 if the Entity is not registered with a World).
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Returns the description of the Entity.
      *
      * @return Entity description.
      */
     public String getDescription() {
-        return description;
+        return archetype.getDescription();
+    }
+
+    /**
+     * Returns the archetype the Entity shares its description with.
+     *
+     * @return Entity archetype.
+     */
+    public Archetype getArchetype() {
+        return archetype;
     }
 
     /**
@@ -160,27 +527,51 @@ public abstract class Entity {
 
     /**
      * Returns the name of the Entity and the corresponding subclass (Overrides
-     * class implementation of the toString() method.
+     * class implementation of the toString() method. The string is built once
+     * and reused.
      *
      * @return Name of Entity and Subclass.
      */
     @Override
     public String toString() {
-        return getName() + " (" + this.getClass().getSimpleName() + ")";
+        if (label == null) {
+            label = getName() + " (" + this.getClass().getSimpleName() + ")";
+        }
+        return label;
     }
 
     /**
-     * String description of the Entity.
+     * Archetype holding the description of the Entity.
      */
-    private final String description;
+    private final Archetype archetype;
 
     /**
      * String name of the Entity.
      */
     private final String name;
 
+    /**
+     * Decides where the Entity moves on its own.
+     */
+    private Behavior behavior;
+
+    /**
+     * Numerical ID of the Entity within the World it is registered with.
+     */
+    private int id;
+
+    /**
+     * Number of random numbers the Entity has drawn.
+     */
+    private long rolls;
+
+    /**
+     * Name of the Entity and its subclass, built on first use.
+     */
+    private String label;
+
     /**
      * Sector the Entity is in.
      */
-    private Sector currentSector;
+    private volatile Sector currentSector;
 }
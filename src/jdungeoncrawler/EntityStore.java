@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.Arrays;
+
+/**
+ * Optional index that mirrors the hot fields of a World's registered Entities
+ * in parallel primitive arrays indexed by Entity ID: the type of Entity, the
+ * ID of the Sector it is in and (for Players) its respect. The Entity objects
+ * own these fields and remain the handles every other part of the game uses;
+ * they write their Sector and respect through to the store whenever they
+ * change. Bulk queries such as "every Enemy in a cold Sector" therefore run
+ * as a linear scan over a few arrays instead of walking every Sector's Entity
+ * list, while changes (moves in particular) still go through the Entity
+ * objects and the Sectors' locks.
+ * <p>
+ * The type tags are the game's one classification of Entities, and are also
+ * the type codes of Entity records in binary world files.
+ *
+ * @author Daniel Truong
+ */
+public class EntityStore {
+
+    /**
+     * EntityStore class constructor. Copies the World's registered Entities
+     * into the store (without decoding the Sectors of a mapped World) and
+     * attaches the store to the World, which adds every Entity registered
+     * from then on.
+     *
+     * @param world World whose Entities are stored.
+     */
+    public EntityStore(World world) {
+        this.world = world;
+        types = new byte[16];
+        sectors = new int[16];
+        respect = new int[16];
+        size = 0;
+        free(0, types.length);
+        for (int id = 0; id < world.registeredCount(); id++) {
+            Entity entity = world.registeredEntity(id);
+            if (entity != null) {
+                add(entity);
+            }
+        }
+        world.setStore(this);
+    }
+
+    /**
+     * Adds a registered Entity to the store under its ID.
+     *
+     * @param entity Entity to add.
+     */
+    void add(Entity entity) {
+        int id = entity.getId();
+        if (id >= types.length) {
+            int length = Math.max(id + 1, types.length * 2);
+            int old = types.length;
+            types = Arrays.copyOf(types, length);
+            sectors = Arrays.copyOf(sectors, length);
+            respect = Arrays.copyOf(respect, length);
+            free(old, length);
+        }
+        types[id] = typeOf(entity);
+        Sector current = entity.getCurrentSector();
+        sectors[id] = current == null ? -1 : current.getId();
+        respect[id] = entity instanceof Player
+                ? ((Player) entity).getRespect() : 0;
+        size = Math.max(size, id + 1);
+    }
+
+    /**
+     * Forgets every Entity (when the World's Entities are numbered again).
+     */
+    void clear() {
+        free(0, size);
+        size = 0;
+    }
+
+    /**
+     * Marks a range of IDs as unused, so scans skip them.
+     *
+     * @param from First ID to mark (inclusive).
+     * @param to Last ID to mark (exclusive).
+     */
+    private void free(int from, int to) {
+        Arrays.fill(types, from, to, NONE);
+        Arrays.fill(sectors, from, to, -1);
+        Arrays.fill(respect, from, to, 0);
+    }
+
+    /**
+     * Records the Sector an Entity is in.
+     *
+     * @param id Numerical ID of the Entity.
+     * @param sector Numerical ID of the Sector (-1 for none).
+     */
+    void setSector(int id, int sector) {
+        if (id < size) {
+            sectors[id] = sector;
+        }
+    }
+
+    /**
+     * Records the respect of a Player.
+     *
+     * @param id Numerical ID of the Player.
+     * @param points Respect of the Player.
+     */
+    void setRespect(int id, int points) {
+        if (id < size) {
+            respect[id] = points;
+        }
+    }
+
+    /**
+     * Returns the type of an Entity.
+     *
+     * @param id Numerical ID of the Entity.
+     * @return PLAYER, ALLY or ENEMY (NONE if no Entity has the ID).
+     */
+    public int getType(int id) {
+        return types[id];
+    }
+
+    /**
+     * Returns the Sector an Entity is in.
+     *
+     * @param id Numerical ID of the Entity.
+     * @return Numerical ID of the Sector (-1 for none).
+     */
+    public int getSector(int id) {
+        return sectors[id];
+    }
+
+    /**
+     * Returns the respect of a Player.
+     *
+     * @param id Numerical ID of the Player.
+     * @return Respect of the Player (0 for Allies and Enemies).
+     */
+    public int getRespect(int id) {
+        return respect[id];
+    }
+
+    /**
+     * Returns the number of Entity IDs in the store (including unused IDs).
+     *
+     * @return Number of Entities.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Counts the Entities of a type.
+     *
+     * @param type PLAYER, ALLY or ENEMY.
+     * @return Number of Entities of the type.
+     */
+    public int count(int type) {
+        int count = 0;
+        for (int id = 0; id < size; id++) {
+            if (types[id] == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the Entities of a type in Sectors of a temperature.
+     *
+     * @param type PLAYER, ALLY or ENEMY.
+     * @param state Numerical representation of the temperature (0 = cold, 1
+     * = cool, 2 = warm, 3 = hot).
+     * @return IDs of the Entities found, in ascending order.
+     */
+    public int[] select(int type, int state) {
+        float[] temperatures = world.getTemperatures();
+        int[] found = new int[16];
+        int count = 0;
+        for (int id = 0; id < size; id++) {
+            int sector = sectors[id];
+            if (types[id] != type || sector < 0) {
+                continue;
+            }
+            int temperature = temperatures != null
+                    ? Math.round(temperatures[sector]) : world.getState(sector);
+            if (temperature == state) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = id;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Makes every Entity of a type in Sectors of a temperature attempt to
+     * move, as its Behavior decides. Only the selection is a scan of the
+     * store; each move is made through the Entity object, which updates the
+     * store in turn.
+     *
+     * @param type PLAYER, ALLY or ENEMY.
+     * @param state Numerical representation of the temperature (0 = cold, 1
+     * = cool, 2 = warm, 3 = hot).
+     * @return Number of Entities that attempted to move.
+     */
+    public int attemptMoves(int type, int state) {
+        int[] found = select(type, state);
+        for (int id : found) {
+            world.getEntity(id).attemptMove();
+        }
+        return found.length;
+    }
+
+    /**
+     * Returns the type of an Entity object (used by binary world files as
+     * well).
+     *
+     * @param entity Entity to classify.
+     * @return PLAYER, ALLY or ENEMY.
+     */
+    static byte typeOf(Entity entity) {
+        if (entity instanceof Player) {
+            return PLAYER;
+        }
+        if (entity instanceof Ally) {
+            return ALLY;
+        }
+        return ENEMY;
+    }
+
+    /**
+     * Type of an unused ID.
+     */
+    public static final byte NONE = -1;
+
+    /**
+     * Type of a Player.
+     */
+    public static final byte PLAYER = 0;
+
+    /**
+     * Type of an Ally.
+     */
+    public static final byte ALLY = 1;
+
+    /**
+     * Type of an Enemy.
+     */
+    public static final byte ENEMY = 2;
+
+    /**
+     * World whose Entities are stored.
+     */
+    private final World world;
+
+    /**
+     * Type of every Entity (NONE for unused IDs), indexed by Entity ID.
+     */
+    private byte[] types;
+
+    /**
+     * Sector ID of every Entity (-1 for none), indexed by Entity ID.
+     */
+    private int[] sectors;
+
+    /**
+     * Respect of every Player (0 for other Entities), indexed by Entity ID.
+     */
+    private int[] respect;
+
+    /**
+     * Number of Entity IDs in the store.
+     */
+    private int size;
+}
@@ -0,0 +1,487 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * Hosts many Players in one shared World over TCP. A single thread runs a
+ * non-blocking selector: commands read from clients are queued, carried out
+ * in one batch per tick, and the responses are sent back with gathering
+ * writes. Because only the server thread touches the World, Players never
+ * race each other.
+ *
+ * @author Daniel Truong
+ */
+public class GameServer {
+
+    /**
+     * GameServer class constructor. The World's own Player is taken out of
+     * the World; the Sector it started in is where clients join.
+     *
+     * @param world World shared by every client.
+     * @param port TCP port to listen on.
+     * @throws IOException If the port cannot be opened.
+     */
+    public GameServer(World world, int port) throws IOException {
+        Player original = world.getPlayer();
+        spawn = original.getCurrentSector();
+        spawn.removeEntity(original);
+        archetype = original.getArchetype();
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), BACKLOG);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        clients = new ArrayList<>();
+        prompt = ByteBuffer.wrap(("Enter a command (type \"help\" for a "
+                + "list of commands): ").getBytes(StandardCharsets.UTF_8))
+                .asReadOnlyBuffer();
+        joined = 0;
+        running = true;
+    }
+
+    /**
+     * Runs the server until stop() is called.
+     *
+     * @throws IOException If the selector fails.
+     */
+    public void run() throws IOException {
+        long nextTick = System.currentTimeMillis() + TICK_MILLIS;
+        while (running) {
+            selector.select(Math.max(1, nextTick
+                    - System.currentTimeMillis()));
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                } else {
+                    Client client = (Client) key.attachment();
+                    if (key.isReadable()) {
+                        client.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        client.flush();
+                    }
+                }
+            }
+            if (System.currentTimeMillis() >= nextTick) {
+                tick();
+                nextTick = System.currentTimeMillis() + TICK_MILLIS;
+            }
+        }
+        for (Client client : new ArrayList<>(clients)) {
+            client.close();
+        }
+        server.close();
+        selector.close();
+    }
+
+    /**
+     * Stops the server after the current tick.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Returns the number of connected clients.
+     *
+     * @return Client count.
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Carries out every command queued since the last tick and sends the
+     * responses.
+     */
+    private void tick() {
+        for (Client client : new ArrayList<>(clients)) {
+            if (!client.commands.isEmpty()) {
+                client.runCommands();
+            }
+        }
+    }
+
+    /**
+     * Accepts pending connections and gives each one its own Player.
+     */
+    private void accept() {
+        SocketChannel channel;
+        try {
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                Player player = new Player("Player " + (++joined),
+                        archetype);
+                Sector start = findRoom(player);
+                Client client = new Client(channel, player);
+                if (start == null) {
+                    client.send("The world is full. Please try again later.");
+                    client.close();
+                    continue;
+                }
+                client.key = channel.register(selector, SelectionKey.OP_READ,
+                        client);
+                clients.add(client);
+                client.send("Welcome, " + player.getName() + "!");
+            }
+        } catch (IOException ioe) {
+            System.out.println("Error! Could not accept a connection.");
+        }
+    }
+
+    /**
+     * Places a Player in the spawn Sector, or in the nearest Sector with
+     * room if the spawn Sector is full.
+     *
+     * @param player Player to place.
+     * @return Sector the Player was placed in (null if no Sector had room).
+     */
+    private Sector findRoom(Player player) {
+        ArrayDeque<Sector> queue = new ArrayDeque<>();
+        HashSet<Sector> seen = new HashSet<>();
+        queue.add(spawn);
+        seen.add(spawn);
+        while (!queue.isEmpty()) {
+            Sector sector = queue.poll();
+            if (sector.addEntity(player)) {
+                player.setCurrentSector(sector);
+                return sector;
+            }
+            for (Direction direction : Direction.VALUES) {
+                Sector neighbor = sector.getNeighbor(direction);
+                if (neighbor != null && seen.add(neighbor)) {
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Connection to a single client and the Player it controls.
+     */
+    private class Client {
+
+        /**
+         * Client class constructor.
+         *
+         * @param channel Connection to the client.
+         * @param player Player controlled by the client.
+         */
+        Client(SocketChannel channel, Player player) {
+            this.channel = channel;
+            this.player = player;
+            input = ByteBuffer.allocate(INPUT_SIZE);
+            decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            text = CharBuffer.allocate(INPUT_SIZE);
+            line = new StringBuilder();
+            commands = new ArrayDeque<>();
+            response = new StringBuilder();
+            pending = new ArrayDeque<>();
+        }
+
+        /**
+         * Reads what the client sent, decodes it as UTF-8 and queues every
+         * complete line as a command. Bytes of a character split across two
+         * reads are kept until the rest arrives.
+         */
+        void read() {
+            int count;
+            try {
+                count = channel.read(input);
+            } catch (IOException ioe) {
+                count = -1;
+            }
+            if (count < 0) {
+                close();
+                return;
+            }
+            input.flip();
+            decoder.decode(input, text, false);
+            input.compact();
+            parse();
+            watch();
+        }
+
+        /**
+         * Queues every complete line decoded so far as a command, until
+         * MAX_COMMANDS are waiting. The characters after that are kept, and
+         * the client is not read from again until the commands have run.
+         */
+        void parse() {
+            text.flip();
+            while (text.hasRemaining() && commands.size() < MAX_COMMANDS) {
+                char c = text.get();
+                if (c == '\n') {
+                    String command = line.toString().trim();
+                    line.setLength(0);
+                    if (!command.isEmpty()) {
+                        commands.add(command);
+                    }
+                } else if (line.length() < INPUT_SIZE) {
+                    line.append(c);
+                }
+            }
+            text.compact();
+        }
+
+        /**
+         * Carries out the client's queued commands and sends the responses
+         * (closing the connection after "quit").
+         */
+        void runCommands() {
+            boolean quit = false;
+            response.setLength(0);
+            while (!commands.isEmpty() && !quit) {
+                String command = commands.poll();
+                quit = command.equalsIgnoreCase("quit");
+                int length = response.length();
+                player.execute(command, response);
+                if (response.length() > length) {
+                    response.append('\n');
+                }
+            }
+            if (quit) {
+                response.append("Goodbye!\n");
+                queue(response);
+                close();
+            } else {
+                queue(response);
+                pending.add(prompt.duplicate());
+                parse();
+                flush();
+            }
+        }
+
+        /**
+         * Sends a message followed by the prompt.
+         *
+         * @param message Message to send.
+         */
+        void send(String message) {
+            queue(message + "\n");
+            pending.add(prompt.duplicate());
+            flush();
+        }
+
+        /**
+         * Encodes text and adds it to the data waiting to be written.
+         *
+         * @param text Text to write.
+         */
+        void queue(CharSequence text) {
+            pending.add(StandardCharsets.UTF_8.encode(CharBuffer.wrap(text)));
+        }
+
+        /**
+         * Writes as much of the waiting data as the socket accepts in one
+         * gathering write, and asks to be told when the rest can be written.
+         */
+        void flush() {
+            try {
+                ByteBuffer[] buffers = pending.toArray(
+                        new ByteBuffer[pending.size()]);
+                channel.write(buffers);
+            } catch (IOException ioe) {
+                close();
+                return;
+            }
+            while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+                pending.poll();
+            }
+            watch();
+        }
+
+        /**
+         * Asks to be told when the client sent more (unless its command
+         * queue is full) and when waiting data can be written.
+         */
+        void watch() {
+            if (key != null && key.isValid()) {
+                int ops = commands.size() < MAX_COMMANDS
+                        ? SelectionKey.OP_READ : 0;
+                if (!pending.isEmpty()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+                key.interestOps(ops);
+            }
+        }
+
+        /**
+         * Closes the connection and takes the Player out of the World.
+         */
+        void close() {
+            if (!pending.isEmpty()) {
+                try {
+                    channel.write(pending.toArray(
+                            new ByteBuffer[pending.size()]));
+                } catch (IOException ioe) {
+                }
+            }
+            player.leave();
+            clients.remove(this);
+            try {
+                channel.close();
+            } catch (IOException ioe) {
+            }
+        }
+
+        /**
+         * Connection to the client.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * Player controlled by the client.
+         */
+        private final Player player;
+
+        /**
+         * Buffer for bytes read from the client.
+         */
+        private final ByteBuffer input;
+
+        /**
+         * Decoder of the UTF-8 bytes read from the client.
+         */
+        private final CharsetDecoder decoder;
+
+        /**
+         * Characters decoded but not yet split into command lines.
+         */
+        private final CharBuffer text;
+
+        /**
+         * Characters of the command line currently being read.
+         */
+        private final StringBuilder line;
+
+        /**
+         * Commands waiting for the next tick (at most MAX_COMMANDS).
+         */
+        private final ArrayDeque<String> commands;
+
+        /**
+         * Buffer reused for the responses of one tick.
+         */
+        private final StringBuilder response;
+
+        /**
+         * Data waiting to be written to the client.
+         */
+        private final ArrayDeque<ByteBuffer> pending;
+
+        /**
+         * Selection key of the connection.
+         */
+        private SelectionKey key;
+    }
+
+    /**
+     * Milliseconds between two batches of commands.
+     */
+    public static final int TICK_MILLIS = 50;
+
+    /**
+     * Number of connections the operating system may hold before they are
+     * accepted.
+     */
+    private static final int BACKLOG = 4096;
+
+    /**
+     * Size of each client's input buffer (and the longest command line).
+     */
+    private static final int INPUT_SIZE = 256;
+
+    /**
+     * Largest number of commands a client may have waiting for the next
+     * tick.
+     */
+    private static final int MAX_COMMANDS = 16;
+
+    /**
+     * Sector where clients join the World.
+     */
+    private final Sector spawn;
+
+    /**
+     * Archetype (description) shared by every client's Player.
+     */
+    private final Archetype archetype;
+
+    /**
+     * Selector watching the server socket and every client.
+     */
+    private final Selector selector;
+
+    /**
+     * Socket accepting new clients.
+     */
+    private final ServerSocketChannel server;
+
+    /**
+     * Connected clients.
+     */
+    private final ArrayList<Client> clients;
+
+    /**
+     * Prompt sent after every response (shared by all clients).
+     */
+    private final ByteBuffer prompt;
+
+    /**
+     * Number of clients that have joined so far (used to name Players).
+     */
+    private int joined;
+
+    /**
+     * Whether the server keeps running.
+     */
+    private volatile boolean running;
+}
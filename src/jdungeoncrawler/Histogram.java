@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Values are counted in
+ * log-linear buckets (32 buckets for every power of two), so any value is
+ * kept to within about 3% of its size, from one nanosecond to the largest
+ * long, in a fixed number of buckets.
+ *
+ * @author Daniel Truong
+ */
+public class Histogram {
+
+    /**
+     * Histogram class constructor.
+     */
+    public Histogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        count = new LongAdder();
+        total = new LongAdder();
+        max = new LongAccumulator(Long::max, 0);
+    }
+
+    /**
+     * Counts a value.
+     *
+     * @param value Value to count (negative values count as zero).
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        counts.incrementAndGet(bucket(clamped));
+        count.increment();
+        total.add(clamped);
+        max.accumulate(clamped);
+    }
+
+    /**
+     * Returns the number of values counted.
+     *
+     * @return Number of values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean of the values counted.
+     *
+     * @return Mean value (0 if none were counted).
+     */
+    public double getMean() {
+        long values = count.sum();
+        return values == 0 ? 0 : (double) total.sum() / values;
+    }
+
+    /**
+     * Returns the largest value counted.
+     *
+     * @return Largest value (0 if none were counted).
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which a fraction of the values fall.
+     *
+     * @param fraction Fraction of the values (0.5 for the median, 0.99 for
+     * the 99th percentile).
+     * @return Lowest value of the bucket holding the percentile (0 if no
+     * values were counted).
+     */
+    public long getPercentile(double fraction) {
+        long values = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            values += counts.get(i);
+        }
+        long rank = (long) Math.ceil(fraction * values);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen > 0 && seen >= rank) {
+                return lowest(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the bucket a value is counted in.
+     *
+     * @param value Value to count (zero or more).
+     * @return Index of the bucket.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS
+                + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the lowest value counted in a bucket.
+     *
+     * @param bucket Index of the bucket.
+     * @return Lowest value of the bucket.
+     */
+    private static long lowest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long mantissa = SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return mantissa << shift;
+    }
+
+    /**
+     * Number of bits of a value kept beyond its highest bit.
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * Number of buckets for every power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Number of buckets.
+     */
+    private static final int BUCKETS = SUB_BUCKETS
+            + (64 - SUB_BITS - 1) * SUB_BUCKETS;
+
+    /**
+     * Number of values counted in every bucket.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * Number of values counted.
+     */
+    private final LongAdder count;
+
+    /**
+     * Sum of the values counted.
+     */
+    private final LongAdder total;
+
+    /**
+     * Largest value counted.
+     */
+    private final LongAccumulator max;
+}
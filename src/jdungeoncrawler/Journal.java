@@ -0,0 +1,509 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-ahead journal of every change made to a World. The World is saved
+ * as a binary world file (the snapshot), and every move, temperature change
+ * and respect change made afterwards is appended to a journal file as a
+ * fixed-size record. The temperatures changed by one Diffusion tick are
+ * appended as a single record followed by a (Sector ID, temperature) pair
+ * per Sector, and are replayed all together or not at all. Records are
+ * collected in memory and written to disk in groups, either when a buffer's
+ * worth is waiting or every few milliseconds. After a crash, recover() loads
+ * the snapshot and replays only the journal written since it.
+ * <p>
+ * Changes are reported while the Sectors involved are locked, so recording
+ * one only adds it to a lock-free queue; the records are written and forced
+ * to disk by the committer thread, which holds no Sector lock. The Journal's
+ * own lock is only taken by commits and snapshots, and always before any
+ * Sector lock (a snapshot reads the Sectors while holding it).
+ * <p>
+ * Entities are identified by their IDs, which taking a snapshot never
+ * changes. Entities added to the World without an ID after the last snapshot
+ * are not journaled until the next one gives them one.
+ *
+ * @author Daniel Truong
+ */
+public class Journal implements WorldListener {
+
+    /**
+     * Journal class constructor. Takes a first snapshot of the World and
+     * starts an empty journal.
+     *
+     * @param world World to journal.
+     * @param directory Directory holding the snapshot and journal files.
+     * @param commitMillis Milliseconds between two group commits.
+     * @throws IOException If the files cannot be written.
+     */
+    public Journal(World world, String directory, int commitMillis)
+            throws IOException {
+        this.world = world;
+        snapshotFile = new File(directory, SNAPSHOT);
+        journalFile = new File(directory, JOURNAL);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        records = new ConcurrentLinkedQueue<>();
+        waiting = new AtomicInteger();
+        snapshot();
+        world.addListener(this);
+        committer = Executors.newSingleThreadScheduledExecutor();
+        committing = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    commit();
+                } catch (IOException ioe) {
+                    System.out.println("Error! Could not write the journal.");
+                }
+            }
+        };
+        committer.scheduleWithFixedDelay(committing, commitMillis,
+                commitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves the whole World as a new snapshot and empties the journal.
+     * Entities without a numerical ID are registered first, so their changes
+     * can be journaled; Entities that have one keep it. The World must not
+     * change while the snapshot is taken.
+     *
+     * @throws IOException If the files cannot be written.
+     */
+    public synchronized void snapshot() throws IOException {
+        commit();
+        world.registerUnnumbered();
+        File temporary = new File(snapshotFile.getPath() + ".tmp");
+        new BinaryWorld().write(world, temporary.getPath());
+        Files.move(temporary.toPath(), snapshotFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        if (channel != null) {
+            channel.close();
+        }
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+    }
+
+    /**
+     * Writes the records collected so far to the journal file and forces
+     * them to disk.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    public synchronized void commit() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        boolean written = false;
+        Record record;
+        while ((record = records.poll()) != null) {
+            waiting.addAndGet(-record.size());
+            if (buffer.remaining() < RECORD_SIZE) {
+                flush();
+            }
+            buffer.put(record.type).putInt(record.first)
+                    .putInt(record.second);
+            if (record.values != null) {
+                for (int i = 0; i < record.values.length; i += 2) {
+                    if (buffer.remaining() < PAIR_SIZE) {
+                        flush();
+                    }
+                    buffer.putInt(record.values[i])
+                            .putInt(record.values[i + 1]);
+                }
+            }
+            written = true;
+        }
+        if (written) {
+            flush();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Writes the buffered records to the journal file.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Commits the remaining records and closes the journal.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    public void close() throws IOException {
+        world.removeListener(this);
+        committer.shutdown();
+        synchronized (this) {
+            commit();
+            channel.close();
+        }
+    }
+
+    /**
+     * Journals an Entity moving into another Sector, or leaving the World
+     * (recorded as a move to Sector -1).
+     *
+     * @param entity Entity that moved.
+     * @param from Sector the Entity left.
+     * @param to Sector the Entity entered (null if it left the World).
+     */
+    @Override
+    public void entityMoved(Entity entity, Sector from, Sector to) {
+        if (entity.getId() >= 0) {
+            append(MOVE, entity.getId(), to == null ? -1 : to.getId());
+        }
+    }
+
+    /**
+     * Journals the new temperature of a Sector.
+     *
+     * @param sector Sector whose temperature changed.
+     */
+    @Override
+    public void temperatureChanged(Sector sector) {
+        append(TEMPERATURE, sector.getId(), sector.getState());
+    }
+
+    /**
+     * Journals the new temperatures of the Sectors changed by one Diffusion
+     * tick as a single record.
+     *
+     * @param sectors Sectors whose temperature changed.
+     */
+    @Override
+    public void temperaturesChanged(List<Sector> sectors) {
+        int[] values = new int[sectors.size() * 2];
+        for (int i = 0; i < sectors.size(); i++) {
+            Sector sector = sectors.get(i);
+            values[i * 2] = sector.getId();
+            values[i * 2 + 1] = sector.getState();
+        }
+        append(new Record(TEMPERATURES, sectors.size(), 0, values));
+    }
+
+    /**
+     * Journals the new respect level of a Player.
+     *
+     * @param player Player whose respect changed.
+     */
+    @Override
+    public void respectChanged(Player player) {
+        if (player.getId() >= 0) {
+            append(RESPECT, player.getId(), player.getRespect());
+        }
+    }
+
+    /**
+     * Adds a fixed-size record to the group waiting to be committed.
+     *
+     * @param type Record type.
+     * @param first First value of the record.
+     * @param second Second value of the record.
+     */
+    private void append(byte type, int first, int second) {
+        append(new Record(type, first, second, null));
+    }
+
+    /**
+     * Adds a record to the group waiting to be committed, without blocking.
+     * Once a buffer's worth of records is waiting, the committer thread is
+     * asked to commit them right away.
+     *
+     * @param record Record to add.
+     */
+    private void append(Record record) {
+        records.add(record);
+        int size = record.size();
+        int before = waiting.getAndAdd(size);
+        if (before < BUFFER_SIZE && before + size >= BUFFER_SIZE) {
+            try {
+                committer.execute(committing);
+            } catch (RejectedExecutionException ree) {
+                // The journal is closing, and close() commits what is left.
+            }
+        }
+    }
+
+    /**
+     * Change waiting to be written to the journal.
+     */
+    private static final class Record {
+
+        /**
+         * Record class constructor.
+         *
+         * @param type Record type.
+         * @param first First value of the record.
+         * @param second Second value of the record.
+         * @param values (Sector ID, temperature) pairs following the record
+         * (null for none).
+         */
+        Record(byte type, int first, int second, int[] values) {
+            this.type = type;
+            this.first = first;
+            this.second = second;
+            this.values = values;
+        }
+
+        /**
+         * Returns the size of the record in the journal file.
+         *
+         * @return Size in bytes.
+         */
+        int size() {
+            return values == null ? RECORD_SIZE
+                    : RECORD_SIZE + values.length / 2 * PAIR_SIZE;
+        }
+
+        /**
+         * Record type.
+         */
+        final byte type;
+
+        /**
+         * First value of the record.
+         */
+        final int first;
+
+        /**
+         * Second value of the record.
+         */
+        final int second;
+
+        /**
+         * (Sector ID, temperature) pairs following the record (null for
+         * none).
+         */
+        final int[] values;
+    }
+
+    /**
+     * Rebuilds a World from its last snapshot and the journal written since.
+     * A record cut short by a crash ends the replay (a batch of temperatures
+     * cut short is dropped whole).
+     *
+     * @param directory Directory holding the snapshot and journal files.
+     * @return Recovered World.
+     * @throws IOException If the files cannot be read, or the journal has a
+     * record of an unknown type or changes the respect of an Entity that is
+     * not a Player.
+     */
+    public static World recover(String directory) throws IOException {
+        World world = new BinaryWorld().read(new File(directory, SNAPSHOT)
+                .getPath());
+        File journal = new File(directory, JOURNAL);
+        if (!journal.exists()) {
+            return world;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(journal, "r");
+                FileChannel channel = file.getChannel()) {
+            ByteBuffer records = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            records.flip();
+            while (fill(channel, records, RECORD_SIZE)) {
+                byte type = records.get();
+                int first = records.getInt();
+                int second = records.getInt();
+                switch (type) {
+                    case MOVE:
+                        if (second < 0) {
+                            world.getEntity(first).leave();
+                        } else {
+                            world.getEntity(first)
+                                    .move(world.getSector(second));
+                        }
+                        break;
+                    case TEMPERATURE:
+                        world.getSector(first).setState(second);
+                        break;
+                    case TEMPERATURES:
+                        int[] values = new int[first * 2];
+                        for (int i = 0; i < values.length; i += 2) {
+                            if (!fill(channel, records, PAIR_SIZE)) {
+                                return world;
+                            }
+                            values[i] = records.getInt();
+                            values[i + 1] = records.getInt();
+                        }
+                        for (int i = 0; i < values.length; i += 2) {
+                            world.getSector(values[i]).setState(values[i + 1]);
+                        }
+                        break;
+                    case RESPECT:
+                        Entity entity = world.getEntity(first);
+                        if (!(entity instanceof Player)) {
+                            throw new IOException("The journal changes the "
+                                    + "respect of entity " + first
+                                    + ", which is not a player.");
+                        }
+                        ((Player) entity).setRespect(second);
+                        break;
+                    default:
+                        throw new IOException("The journal has a record of "
+                                + "unknown type " + type + ".");
+                }
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Reads from the journal file until the buffer holds enough bytes.
+     *
+     * @param channel Journal file.
+     * @param buffer Buffer being read from (ready to be read).
+     * @param bytes Number of bytes needed.
+     * @return True if the bytes are there, False if the journal ends first.
+     * @throws IOException If the journal cannot be read.
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer,
+            int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            buffer.compact();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Name of the snapshot file.
+     */
+    public static final String SNAPSHOT = "snapshot.dat";
+
+    /**
+     * Name of the journal file.
+     */
+    public static final String JOURNAL = "journal.log";
+
+    /**
+     * Record type for an Entity moving (Entity ID, Sector ID, or -1 when it
+     * leaves the World).
+     */
+    private static final byte MOVE = 0;
+
+    /**
+     * Record type for a temperature change (Sector ID, temperature).
+     */
+    private static final byte TEMPERATURE = 1;
+
+    /**
+     * Record type for a respect change (Player ID, respect).
+     */
+    private static final byte RESPECT = 2;
+
+    /**
+     * Record type for the temperatures changed by a Diffusion tick (number of
+     * Sectors, unused), followed by a (Sector ID, temperature) pair per
+     * Sector.
+     */
+    private static final byte TEMPERATURES = 3;
+
+    /**
+     * Size in bytes of a record (type and two values).
+     */
+    private static final int RECORD_SIZE = 9;
+
+    /**
+     * Size in bytes of a (Sector ID, temperature) pair of a batch.
+     */
+    private static final int PAIR_SIZE = 8;
+
+    /**
+     * Size in bytes of the group commit buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * World being journaled.
+     */
+    private final World world;
+
+    /**
+     * File holding the last snapshot.
+     */
+    private final File snapshotFile;
+
+    /**
+     * File holding the records written since the last snapshot.
+     */
+    private final File journalFile;
+
+    /**
+     * Buffer the records are written to the journal file through.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Records waiting for the next group commit, in the order the changes
+     * were made.
+     */
+    private final ConcurrentLinkedQueue<Record> records;
+
+    /**
+     * Number of bytes of records waiting for the next group commit.
+     */
+    private final AtomicInteger waiting;
+
+    /**
+     * Thread committing the records at a fixed interval.
+     */
+    private final ScheduledExecutorService committer;
+
+    /**
+     * Task the committer thread runs to commit the waiting records.
+     */
+    private final Runnable committing;
+
+    /**
+     * Open journal file.
+     */
+    private FileChannel channel;
+}
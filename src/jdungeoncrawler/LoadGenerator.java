@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Load-generating client for the GameServer. Opens many connections from a
+ * single thread; every connection sends a random command each time it
+ * receives a prompt, and the number of answered commands is reported.
+ *
+ * @author Daniel Truong
+ */
+public class LoadGenerator {
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args Host, port, number of clients and number of seconds to run
+     * (defaults: localhost 4000 1000 10).
+     * @throws IOException If the connections cannot be made.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        Selector selector = Selector.open();
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        for (int i = 0; i < clients; i++) {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(address);
+            channel.register(selector, SelectionKey.OP_CONNECT);
+        }
+
+        ByteBuffer input = ByteBuffer.allocate(64 * 1024);
+        ByteBuffer[] lines = new ByteBuffer[COMMANDS.length];
+        for (int i = 0; i < COMMANDS.length; i++) {
+            lines[i] = ByteBuffer.wrap((COMMANDS[i] + "\n")
+                    .getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        }
+        Random random = new Random();
+        long answered = 0;
+        int connected = 0;
+        long end = System.currentTimeMillis() + seconds * 1000L;
+        while (System.currentTimeMillis() < end) {
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                SocketChannel channel = (SocketChannel) key.channel();
+                try {
+                    if (key.isConnectable()) {
+                        channel.finishConnect();
+                        key.interestOps(SelectionKey.OP_READ);
+                        connected++;
+                    } else if (key.isReadable()) {
+                        input.clear();
+                        if (channel.read(input) < 0) {
+                            key.cancel();
+                            channel.close();
+                            continue;
+                        }
+                        if (endsWithPrompt(input)) {
+                            answered++;
+                            channel.write(lines[random.nextInt(lines.length)]
+                                    .duplicate());
+                        }
+                    }
+                } catch (IOException ioe) {
+                    key.cancel();
+                    channel.close();
+                }
+            }
+        }
+        System.out.println(connected + " clients connected, " + answered
+                + " responses in " + seconds + " seconds ("
+                + answered / seconds + " per second).");
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Returns whether the data just read ends with the server's prompt.
+     *
+     * @param input Buffer holding the data just read.
+     * @return True if the last bytes are the end of the prompt.
+     */
+    private static boolean endsWithPrompt(ByteBuffer input) {
+        int end = input.position();
+        return end >= 2 && input.get(end - 2) == ':'
+                && input.get(end - 1) == ' ';
+    }
+
+    /**
+     * Commands sent by the clients.
+     */
+    private static final String[] COMMANDS = {"north", "south", "east",
+        "west", "heat", "cool", "look"};
+}
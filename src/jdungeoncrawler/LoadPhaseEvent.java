@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one phase of loading an XML world file: parsing
+ * the elements, linking the forward neighbor references, or numbering the
+ * Entities.
+ *
+ * @author Daniel Truong
+ */
+@Name("jdungeoncrawler.LoadPhase")
+@Label("World Load Phase")
+@Category("JDungeonCrawler")
+@Description("One phase of loading an XML world file")
+class LoadPhaseEvent extends jdk.jfr.Event {
+
+    /**
+     * Name of the phase (parse, link or register).
+     */
+    @Label("Phase")
+    String phase;
+
+    /**
+     * Number of Sectors loaded so far.
+     */
+    @Label("Sectors")
+    int sectors;
+
+    /**
+     * Number of Entities loaded so far.
+     */
+    @Label("Entities")
+    int entities;
+}
@@ -24,6 +24,7 @@
 package jdungeoncrawler;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Scanner;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -38,25 +39,118 @@ import org.xml.sax.SAXException;
 public class Main {
 
     /**
+     * Runs the game on the world file given as the first argument (game.xml
+     * if none is given). Files ending in ".dat" are read as binary world
+     * files. Run with "--compile game.xml game.dat" to compile an XML world
+     * file into a binary world file, or with "--server 4000 [world file]" to
+     * host the world for many players over TCP. Any of these can be preceded
+     * by "--seed 42" to make the World's random numbers reproducible, and a
+     * binary world file can be streamed with "--stream 64 game.dat", which
+     * keeps at most 64 regions of Sectors in memory. With
+     * -Djdungeoncrawler.metrics=true, the game's metrics are published over
+     * JMX, and printed to standard error when a console game ends.
+     *
      * @param args the command line arguments
      * @throws javax.xml.parsers.ParserConfigurationException
      * @throws org.xml.sax.SAXException
      */
     public static void main(String[] args) throws ParserConfigurationException,
             SAXException {
+        if (args.length >= 2 && args[0].equals("--seed")) {
+            seed = Long.valueOf(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length >= 2 && args[0].equals("--stream")) {
+            regions = Integer.valueOf(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+
+        if (args.length == 3 && args[0].equals("--compile")) {
+            try {
+                new BinaryWorld().write(loadWorld(args[1]), args[2]);
+            } catch (IOException ioe) {
+                System.out.println("Error! Could not compile " + args[1]
+                        + " into " + args[2] + ".");
+            }
+            return;
+        }
+
+        if (args.length >= 2 && args[0].equals("--server")) {
+            try {
+                World world = loadWorld(args.length > 2 ? args[2]
+                        : "game.xml");
+                Metrics.register(world);
+                GameServer server = new GameServer(world,
+                        Integer.parseInt(args[1]));
+                System.out.println("Listening on port " + args[1] + ".");
+                server.run();
+            } catch (IOException ioe) {
+                System.out.println("Error! Could not start the server.");
+            }
+            return;
+        }
+
         Scanner input = new Scanner(System.in);
-        XMLHandler world = new XMLHandler();
+        World world = null;
         try {
-            SAXParserFactory spf = SAXParserFactory.newInstance();
-            SAXParser epicSaxParser = spf.newSAXParser();
-            epicSaxParser.parse("game.xml", world);
+            world = loadWorld(args.length > 0 ? args[0] : "game.xml");
         } catch (IOException ioe) {
             System.out.println("Error! File not found. Please make sure "
                     + "the file is in the correct location and try again.");
         }
-        
+
+        Metrics.register(world);
         world.getPlayer().play(input);
         System.out.println("Goodbye!");
+        if (Metrics.ENABLED) {
+            System.err.print(Metrics.report(world));
+        }
+    }
+
+    /**
+     * Loads the game world from an XML or binary world file (using the seed
+     * given on the command line, if any). Binary world files are streamed if
+     * the command line asks for it.
+     *
+     * @param fileName Name of the world file.
+     * @return World read from the file.
+     * @throws IOException If the file cannot be read.
+     * @throws ParserConfigurationException If no XML parser is available.
+     * @throws SAXException If the XML world file is malformed.
+     */
+    public static World loadWorld(String fileName) throws IOException,
+            ParserConfigurationException, SAXException {
+        long start = Metrics.ENABLED ? Metrics.WORLD_LOAD.start() : 0;
+        World world;
+        if (fileName.endsWith(".dat")) {
+            world = regions != null
+                    ? new BinaryWorld().stream(fileName, regions)
+                    : new BinaryWorld().read(fileName);
+        } else {
+            XMLHandler handler = new XMLHandler();
+            SAXParserFactory spf = SAXParserFactory.newInstance();
+            SAXParser epicSaxParser = spf.newSAXParser();
+            epicSaxParser.parse(fileName, handler);
+            world = handler.getWorld();
+        }
+        if (seed != null) {
+            world.setRandom(new RandomSource(seed));
+        }
+        if (Metrics.ENABLED) {
+            Metrics.WORLD_LOAD.stop(start);
+        }
+        return world;
     }
 
+    /**
+     * Seed given on the command line (null to keep the world file's seed).
+     */
+    private static Long seed;
+
+    /**
+     * Largest number of regions of a streamed World kept in memory (null to
+     * read binary world files without streaming them).
+     */
+    private static Integer regions;
+
 }
@@ -0,0 +1,313 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Runtime metrics of the game: lock-free counters and latency histograms
+ * recorded around command dispatch, Entity moves, reactions and world
+ * loading. Metrics are off unless the JVM is started with
+ * -Djdungeoncrawler.metrics=true. The switch is a constant, so when it is off
+ * the JIT compiler removes the recording code altogether. Frequent events
+ * (commands, reactions) are timed at random, about one in every SAMPLE_RATE,
+ * though every one is counted, which keeps the cost of reading the clock off
+ * most calls.
+ * <p>
+ * The metrics are published over JMX as "jdungeoncrawler:type=Metrics"
+ * (along with the Sector occupancy of the World they were published for) and
+ * can be read as text with report().
+ *
+ * @author Daniel Truong
+ */
+public final class Metrics implements MetricsMXBean {
+
+    /**
+     * Metrics class constructor (only the published instance is created).
+     */
+    private Metrics() {
+        world = null;
+    }
+
+    /**
+     * Publishes the metrics over JMX, if they are not already published, and
+     * makes the published report show the Sector occupancy of a World (does
+     * nothing if metrics are off).
+     *
+     * @param world World being played.
+     */
+    public static synchronized void register(World world) {
+        if (!ENABLED) {
+            return;
+        }
+        if (published == null) {
+            try {
+                Metrics metrics = new Metrics();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (!ManagementFactory.getPlatformMBeanServer()
+                        .isRegistered(name)) {
+                    ManagementFactory.getPlatformMBeanServer()
+                            .registerMBean(metrics, name);
+                }
+                published = metrics;
+            } catch (JMException jme) {
+                throw new IllegalStateException("Could not publish metrics.",
+                        jme);
+            }
+        }
+        published.world = world;
+    }
+
+    /**
+     * Returns whether the next event should be timed. Each thread draws from
+     * its own random numbers, so sampling shares no state between threads.
+     *
+     * @return True for about one call in every SAMPLE_RATE.
+     */
+    static boolean sample() {
+        return ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0;
+    }
+
+    /**
+     * Returns the metrics as text, one metric per line, with the occupancy
+     * of the World's Sectors if a World is given. Only the Sectors held in
+     * memory are counted, so a report never decodes or loads a Sector of a
+     * mapped or streamed World.
+     *
+     * @param world World to report the Sector occupancy of (null for none).
+     * @return Text report.
+     */
+    public static String report(World world) {
+        StringBuilder out = new StringBuilder(512);
+        out.append("metrics.enabled ").append(ENABLED).append('\n');
+        appendTimer(out, "commands", COMMANDS);
+        out.append("moves ").append(MOVES.sum()).append('\n');
+        out.append("capacity.hits ").append(CAPACITY_HITS.sum())
+                .append('\n');
+        out.append("reactions ").append(REACTIONS.sum()).append('\n');
+        appendTimer(out, "reaction.dispatch", REACTION_DISPATCH);
+        appendTimer(out, "world.load", WORLD_LOAD);
+        if (world != null) {
+            long[] occupancy = new long[Sector.DEFAULT_CAPACITY + 2];
+            for (Sector sector : world.getHeldSectors()) {
+                int entities = sector.entityCount();
+                occupancy[Math.min(entities, occupancy.length - 1)]++;
+            }
+            for (int i = 0; i < occupancy.length; i++) {
+                if (occupancy[i] > 0) {
+                    out.append("occupancy.").append(i)
+                            .append(i == occupancy.length - 1 ? "+" : "")
+                            .append(' ').append(occupancy[i]).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends the count and the percentiles of the timed durations of a
+     * Timer.
+     *
+     * @param out Buffer to append to.
+     * @param name Name of the metric.
+     * @param timer Timer of the events.
+     */
+    private static void appendTimer(StringBuilder out, String name,
+            Timer timer) {
+        out.append(name).append(".count ").append(timer.count.sum())
+                .append('\n');
+        out.append(name).append(".p50.ns ")
+                .append(timer.durations.getPercentile(0.5)).append('\n');
+        out.append(name).append(".p99.ns ")
+                .append(timer.durations.getPercentile(0.99)).append('\n');
+        out.append(name).append(".max.ns ")
+                .append(timer.durations.getMax()).append('\n');
+    }
+
+    @Override
+    public long getCommands() {
+        return COMMANDS.count.sum();
+    }
+
+    @Override
+    public long getCommandMedianNanos() {
+        return COMMANDS.durations.getPercentile(0.5);
+    }
+
+    @Override
+    public long getCommand99thPercentileNanos() {
+        return COMMANDS.durations.getPercentile(0.99);
+    }
+
+    @Override
+    public long getMoves() {
+        return MOVES.sum();
+    }
+
+    @Override
+    public long getCapacityHits() {
+        return CAPACITY_HITS.sum();
+    }
+
+    @Override
+    public long getReactions() {
+        return REACTIONS.sum();
+    }
+
+    @Override
+    public long getReactionDispatch99thPercentileNanos() {
+        return REACTION_DISPATCH.durations.getPercentile(0.99);
+    }
+
+    @Override
+    public long getWorldLoads() {
+        return WORLD_LOAD.count.sum();
+    }
+
+    @Override
+    public long getWorldLoadMaxNanos() {
+        return WORLD_LOAD.durations.getMax();
+    }
+
+    @Override
+    public String getReport() {
+        return report(world);
+    }
+
+    /**
+     * Counter of events with a histogram of the durations of the sampled
+     * ones.
+     */
+    static final class Timer {
+
+        /**
+         * Timer class constructor.
+         *
+         * @param sampled True to time about one event in every SAMPLE_RATE,
+         * False to time every event.
+         */
+        Timer(boolean sampled) {
+            this.sampled = sampled;
+            count = new LongAdder();
+            durations = new Histogram();
+        }
+
+        /**
+         * Returns the start time of an event if it should be timed.
+         *
+         * @return Clock reading in nanoseconds (0 if the event is not timed).
+         */
+        long start() {
+            return !sampled || sample() ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Counts an event, and records its duration if it was timed.
+         *
+         * @param start Value returned by start() for the event.
+         */
+        void stop(long start) {
+            count.increment();
+            if (start != 0) {
+                durations.record(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * True if only about one event in every SAMPLE_RATE is timed.
+         */
+        final boolean sampled;
+
+        /**
+         * Number of events.
+         */
+        final LongAdder count;
+
+        /**
+         * Durations of the timed events.
+         */
+        final Histogram durations;
+    }
+
+    /**
+     * True if metrics are recorded.
+     */
+    public static final boolean ENABLED
+            = Boolean.getBoolean("jdungeoncrawler.metrics");
+
+    /**
+     * Commands carried out by Players.
+     */
+    static final Timer COMMANDS = new Timer(true);
+
+    /**
+     * Entity moves made.
+     */
+    static final LongAdder MOVES = new LongAdder();
+
+    /**
+     * Times an Entity could not enter a full Sector.
+     */
+    static final LongAdder CAPACITY_HITS = new LongAdder();
+
+    /**
+     * Entity reactions to heating or cooling.
+     */
+    static final LongAdder REACTIONS = new LongAdder();
+
+    /**
+     * Dispatches of the reactions of a Sector.
+     */
+    static final Timer REACTION_DISPATCH = new Timer(true);
+
+    /**
+     * World files loaded.
+     */
+    static final Timer WORLD_LOAD = new Timer(false);
+
+    /**
+     * JMX name the metrics are published under.
+     */
+    private static final String OBJECT_NAME = "jdungeoncrawler:type=Metrics";
+
+    /**
+     * About one event in this many is timed.
+     */
+    private static final int SAMPLE_RATE = 16;
+
+    /**
+     * Instance published over JMX (null until register() is called).
+     */
+    private static Metrics published;
+
+    /**
+     * World whose Sector occupancy the published report shows (null for
+     * none).
+     */
+    private volatile World world;
+}
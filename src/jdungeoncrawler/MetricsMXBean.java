@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+/**
+ * Management interface of the game's Metrics, as published over JMX.
+ * Durations are in nanoseconds.
+ *
+ * @author Daniel Truong
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Returns the number of commands carried out.
+     *
+     * @return Number of commands.
+     */
+    long getCommands();
+
+    /**
+     * Returns the median duration of a command.
+     *
+     * @return Median duration.
+     */
+    long getCommandMedianNanos();
+
+    /**
+     * Returns the 99th percentile of the duration of a command.
+     *
+     * @return 99th percentile duration.
+     */
+    long getCommand99thPercentileNanos();
+
+    /**
+     * Returns the number of Entity moves made.
+     *
+     * @return Number of moves.
+     */
+    long getMoves();
+
+    /**
+     * Returns the number of times an Entity could not enter a full Sector.
+     *
+     * @return Number of capacity hits.
+     */
+    long getCapacityHits();
+
+    /**
+     * Returns the number of Entity reactions to heating or cooling.
+     *
+     * @return Number of reactions.
+     */
+    long getReactions();
+
+    /**
+     * Returns the 99th percentile of the duration of dispatching the
+     * reactions of a Sector.
+     *
+     * @return 99th percentile duration.
+     */
+    long getReactionDispatch99thPercentileNanos();
+
+    /**
+     * Returns the number of worlds loaded.
+     *
+     * @return Number of world loads.
+     */
+    long getWorldLoads();
+
+    /**
+     * Returns the longest duration of loading a world.
+     *
+     * @return Longest duration.
+     */
+    long getWorldLoadMaxNanos();
+
+    /**
+     * Returns the metrics as text, one metric per line, with the occupancy
+     * of the Sectors of the World being played.
+     *
+     * @return Text report.
+     */
+    String getReport();
+}
@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for an Entity moving from one Sector to another
+ * (including the time spent waiting for the Sector locks).
+ *
+ * @author Daniel Truong
+ */
+@Name("jdungeoncrawler.Move")
+@Label("Entity Move")
+@Category("JDungeonCrawler")
+@Description("An Entity moving between Sectors")
+@StackTrace(false)
+class MoveEvent extends jdk.jfr.Event {
+
+    /**
+     * Name of the Entity.
+     */
+    @Label("Entity")
+    String entity;
+
+    /**
+     * Name of the Sector the Entity left.
+     */
+    @Label("From")
+    String from;
+
+    /**
+     * Name of the Sector the Entity entered.
+     */
+    @Label("To")
+    String to;
+
+    /**
+     * Number of Entities in the Sector entered, after the move.
+     */
+    @Label("Entities")
+    int entities;
+}
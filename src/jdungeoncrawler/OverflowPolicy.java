@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+/**
+ * What happens to an Entity that tries to move into a Sector that is already
+ * at capacity.
+ *
+ * @author Daniel Truong
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The move is refused and the Entity stays where it is.
+     */
+    REJECT,
+    /**
+     * The Entity stays where it is and waits in line for the Sector; it moves
+     * in as soon as another Entity leaves.
+     */
+    QUEUE,
+    /**
+     * The Entity moves into the first neighbor of the full Sector that has
+     * room instead.
+     */
+    SPILL;
+
+    /**
+     * Returns the policy matching a name (reject, queue, spill).
+     *
+     * @param name Name of the policy.
+     * @return Matching policy (REJECT if the name is null or unknown).
+     */
+    public static OverflowPolicy fromName(String name) {
+        if (name == null) {
+            return REJECT;
+        }
+        switch (name) {
+            case "queue":
+                return QUEUE;
+            case "spill":
+                return SPILL;
+            default:
+                return REJECT;
+        }
+    }
+}
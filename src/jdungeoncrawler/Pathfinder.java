@@ -0,0 +1,415 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds shortest routes between Sectors over the neighbor table of a World.
+ * Without landmarks, queries run a breadth-first search. Once landmarks are
+ * built, queries run A* guided by the distances from each landmark (the ALT
+ * lower bound: the distance from a landmark to the target, minus the
+ * distance from the landmark to the current Sector), which visits far fewer
+ * Sectors on large maps.
+ * <p>
+ * A Pathfinder reuses its search arrays between queries, so each thread
+ * should use its own.
+ *
+ * @author Daniel Truong
+ */
+public class Pathfinder {
+
+    /**
+     * Pathfinder class constructor.
+     *
+     * @param world World to find routes in.
+     */
+    public Pathfinder(World world) {
+        this.world = world;
+        int size = world.size();
+        cost = new int[size];
+        parent = new int[size];
+        visited = new int[size];
+        queue = new int[size];
+        heapNodes = new int[64];
+        heapCosts = new int[64];
+        heapKeys = new int[64];
+        landmarks = new int[0][];
+        search = 0;
+    }
+
+    /**
+     * Precomputes the distance from a number of landmark Sectors to every
+     * other Sector. The first landmark is Sector 0; every next one is the
+     * Sector farthest from the landmarks picked so far.
+     *
+     * @param count Number of landmarks.
+     */
+    public void buildLandmarks(int count) {
+        int size = world.size();
+        int[][] built = new int[Math.min(count, size)][];
+        int[] nearest = new int[size];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        int next = 0;
+        for (int i = 0; i < built.length; i++) {
+            built[i] = new int[size];
+            breadthFirst(next, -1, built[i]);
+            int farthest = next;
+            for (int id = 0; id < size; id++) {
+                if (built[i][id] >= 0) {
+                    nearest[id] = Math.min(nearest[id], built[i][id]);
+                    if (nearest[id] > nearest[farthest]) {
+                        farthest = id;
+                    }
+                }
+            }
+            next = farthest;
+        }
+        landmarks = built;
+    }
+
+    /**
+     * Returns the number of moves on the shortest route between two Sectors.
+     *
+     * @param from Sector the route starts in.
+     * @param to Sector the route ends in.
+     * @return Number of moves (-1 if the Sector cannot be reached).
+     */
+    public int distance(Sector from, Sector to) {
+        return search(from.getId(), to.getId());
+    }
+
+    /**
+     * Returns the direction of the first move on the shortest route between
+     * two Sectors.
+     *
+     * @param from Sector the route starts in.
+     * @param to Sector the route ends in.
+     * @return Direction to move in (null if already there or unreachable).
+     */
+    public Direction nextStep(Sector from, Sector to) {
+        if (from == to || search(from.getId(), to.getId()) < 0) {
+            return null;
+        }
+        int step = to.getId();
+        while (parent[step] != from.getId()) {
+            step = parent[step];
+        }
+        for (Direction direction : Direction.VALUES) {
+            if (world.getNeighborId(from.getId(), direction) == step) {
+                return direction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the Sectors on the shortest route between two Sectors.
+     *
+     * @param from Sector the route starts in.
+     * @param to Sector the route ends in.
+     * @return Sectors from start to end (empty if unreachable).
+     */
+    public List<Sector> path(Sector from, Sector to) {
+        ArrayList<Sector> route = new ArrayList<>();
+        if (search(from.getId(), to.getId()) < 0) {
+            return route;
+        }
+        for (int id = to.getId(); id != from.getId(); id = parent[id]) {
+            route.add(world.getSector(id));
+        }
+        route.add(from);
+        Collections.reverse(route);
+        return route;
+    }
+
+    /**
+     * Searches for the shortest route between two Sectors, filling in the
+     * parent of every Sector reached.
+     *
+     * @param from Numerical ID of the start Sector.
+     * @param to Numerical ID of the end Sector.
+     * @return Number of moves (-1 if the Sector cannot be reached).
+     */
+    private int search(int from, int to) {
+        if (landmarks.length == 0) {
+            return breadthFirst(from, to, null);
+        }
+        return aStar(from, to);
+    }
+
+    /**
+     * Runs a breadth-first search from a Sector.
+     *
+     * @param from Numerical ID of the start Sector.
+     * @param to Numerical ID of the Sector to stop at (-1 to reach every
+     * Sector).
+     * @param distances Array receiving the distance to every Sector (-1 when
+     * unreachable; null if not needed).
+     * @return Distance to the end Sector (-1 if not reached).
+     */
+    private int breadthFirst(int from, int to, int[] distances) {
+        search++;
+        if (distances != null) {
+            Arrays.fill(distances, -1);
+            distances[from] = 0;
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        visited[from] = search;
+        cost[from] = 0;
+        while (head < tail) {
+            int current = queue[head++];
+            if (current == to) {
+                return cost[current];
+            }
+            for (int d = 0; d < 4; d++) {
+                int neighbor = world.getNeighborId(current,
+                        Direction.fromIndex(d));
+                if (neighbor >= 0 && visited[neighbor] != search) {
+                    visited[neighbor] = search;
+                    cost[neighbor] = cost[current] + 1;
+                    parent[neighbor] = current;
+                    if (distances != null) {
+                        distances[neighbor] = cost[neighbor];
+                    }
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Runs an A* search guided by the landmark distances.
+     *
+     * @param from Numerical ID of the start Sector.
+     * @param to Numerical ID of the end Sector.
+     * @return Number of moves (-1 if the Sector cannot be reached).
+     */
+    private int aStar(int from, int to) {
+        search++;
+        heapSize = 0;
+        visited[from] = search;
+        cost[from] = 0;
+        push(from, 0, estimate(from, to));
+        while (heapSize > 0) {
+            int moves = heapCosts[0];
+            int current = pop();
+            if (moves > cost[current]) {
+                continue;
+            }
+            if (current == to) {
+                return cost[current];
+            }
+            for (int d = 0; d < 4; d++) {
+                int neighbor = world.getNeighborId(current,
+                        Direction.fromIndex(d));
+                if (neighbor < 0) {
+                    continue;
+                }
+                int next = cost[current] + 1;
+                if (visited[neighbor] != search || next < cost[neighbor]) {
+                    visited[neighbor] = search;
+                    cost[neighbor] = next;
+                    parent[neighbor] = current;
+                    push(neighbor, next, next + estimate(neighbor, to));
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a lower bound on the number of moves between two Sectors, from
+     * the landmark distances.
+     *
+     * @param id Numerical ID of the current Sector.
+     * @param to Numerical ID of the end Sector.
+     * @return Lower bound on the distance.
+     */
+    private int estimate(int id, int to) {
+        int best = 0;
+        for (int[] landmark : landmarks) {
+            if (landmark[id] >= 0 && landmark[to] >= 0) {
+                best = Math.max(best, landmark[to] - landmark[id]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds a Sector to the search heap.
+     *
+     * @param node Numerical ID of the Sector.
+     * @param moves Number of moves to reach the Sector.
+     * @param key Estimated total route length through the Sector.
+     */
+    private void push(int node, int moves, int key) {
+        if (heapSize == heapNodes.length) {
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            heapCosts = Arrays.copyOf(heapCosts, heapSize * 2);
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0 && before(key, moves, (i - 1) / 2)) {
+            move((i - 1) / 2, i);
+            i = (i - 1) / 2;
+        }
+        heapNodes[i] = node;
+        heapCosts[i] = moves;
+        heapKeys[i] = key;
+    }
+
+    /**
+     * Removes and returns the Sector with the smallest key from the search
+     * heap.
+     *
+     * @return Numerical ID of the Sector.
+     */
+    private int pop() {
+        int top = heapNodes[0];
+        heapSize--;
+        int node = heapNodes[heapSize];
+        int moves = heapCosts[heapSize];
+        int key = heapKeys[heapSize];
+        int i = 0;
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && before(heapKeys[child + 1],
+                    heapCosts[child + 1], child)) {
+                child++;
+            }
+            if (!before(heapKeys[child], heapCosts[child], key, moves)) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        heapNodes[i] = node;
+        heapCosts[i] = moves;
+        heapKeys[i] = key;
+        return top;
+    }
+
+    /**
+     * Returns whether an entry comes before the heap entry at an index.
+     *
+     * @param key Estimated total route length of the entry.
+     * @param moves Number of moves of the entry.
+     * @param index Index of the heap entry.
+     * @return True if the entry comes first, False otherwise.
+     */
+    private boolean before(int key, int moves, int index) {
+        return before(key, moves, heapKeys[index], heapCosts[index]);
+    }
+
+    /**
+     * Returns whether one entry comes before another: shorter estimated
+     * routes first and, among equal estimates, the Sector closest to the
+     * target (the one with the most moves already made).
+     *
+     * @param key Estimated total route length of the first entry.
+     * @param moves Number of moves of the first entry.
+     * @param otherKey Estimated total route length of the second entry.
+     * @param otherMoves Number of moves of the second entry.
+     * @return True if the first entry comes first, False otherwise.
+     */
+    private static boolean before(int key, int moves, int otherKey,
+            int otherMoves) {
+        return key < otherKey || (key == otherKey && moves > otherMoves);
+    }
+
+    /**
+     * Copies a heap entry to another index.
+     *
+     * @param from Index of the entry.
+     * @param to Index to copy it to.
+     */
+    private void move(int from, int to) {
+        heapNodes[to] = heapNodes[from];
+        heapCosts[to] = heapCosts[from];
+        heapKeys[to] = heapKeys[from];
+    }
+
+    /**
+     * World to find routes in.
+     */
+    private final World world;
+
+    /**
+     * Number of moves to reach each Sector in the current search.
+     */
+    private final int[] cost;
+
+    /**
+     * Sector each Sector was reached from in the current search.
+     */
+    private final int[] parent;
+
+    /**
+     * Number of the last search that reached each Sector (so the arrays never
+     * need to be cleared between searches).
+     */
+    private final int[] visited;
+
+    /**
+     * Queue of Sectors for breadth-first searches.
+     */
+    private final int[] queue;
+
+    /**
+     * Sectors in the A* heap.
+     */
+    private int[] heapNodes;
+
+    /**
+     * Number of moves to reach the Sectors in the A* heap.
+     */
+    private int[] heapCosts;
+
+    /**
+     * Keys of the Sectors in the A* heap.
+     */
+    private int[] heapKeys;
+
+    /**
+     * Number of entries in the A* heap.
+     */
+    private int heapSize;
+
+    /**
+     * Distance from each landmark to every Sector (-1 when unreachable).
+     */
+    private int[][] landmarks;
+
+    /**
+     * Number of the current search.
+     */
+    private int search;
+}
@@ -39,8 +39,20 @@ public class Player extends Entity {
      * @param description Description given to the Player.
      */
     public Player(String name, String description) {
-        super(name, description);
+        this(name, new Archetype(description));
+    }
+
+    /**
+     * Player class constructor for a Player of a shared archetype.
+     *
+     * @param name Name given to the Player.
+     * @param archetype Archetype holding the Player's description.
+     */
+    public Player(String name, Archetype archetype) {
+        super(name, archetype);
         respect = 5;
+        dirty = false;
+        output = new StringBuilder(512);
     }
 
     /**
@@ -48,6 +60,7 @@ public class Player extends Entity {
      */
     public void descreaseRespect() {
         respect -= 1;
+        fireRespectChanged();
     }
 
     /**
@@ -55,6 +68,55 @@ public class Player extends Entity {
      */
     public void increaseRespect() {
         respect += 1;
+        fireRespectChanged();
+    }
+
+    /**
+     * Changes Player's respect level by a number of points at once (listeners
+     * are told once, and not at all if the change is zero).
+     *
+     * @param points Points to add (negative to remove).
+     */
+    public void changeRespect(int points) {
+        if (points != 0) {
+            respect += points;
+            fireRespectChanged();
+        }
+    }
+
+    /**
+     * Sets the Player's respect level directly (used when replaying saved
+     * changes; listeners are not told).
+     *
+     * @param respect Player's respect level.
+     */
+    void setRespect(int respect) {
+        this.respect = respect;
+        storeRespect();
+    }
+
+    /**
+     * Tells the listeners of the Player's World that its respect changed.
+     */
+    private void fireRespectChanged() {
+        dirty = true;
+        storeRespect();
+        Sector sector = getCurrentSector();
+        if (sector != null && sector.getWorld() != null) {
+            sector.getWorld().fireRespectChanged(this);
+        }
+    }
+
+    /**
+     * Writes the Player's respect through to its World's EntityStore (if the
+     * World has one).
+     */
+    private void storeRespect() {
+        Sector sector = getCurrentSector();
+        if (sector != null && sector.getWorld() != null
+                && sector.getWorld().getStore() != null) {
+            sector.getWorld().getStore().setRespect(getId(), respect);
+        }
     }
 
     /**
@@ -68,116 +130,222 @@ public class Player extends Entity {
             System.out.print("Enter a command (type \"help\" for a list of "
                     + "commands): ");
             command = sc.next();
-            switch (command) {
-                case "north":
-                case "south":
-                case "east":
-                case "west":
-                    try {
-                        move(getCurrentSector().getNeighbor(command));
-                    } catch (NullPointerException npe) {
-                        System.out.println("Room doesn't exist");
-                    }
-                    break;
-                case "heat":
-                    heatSector(this);
-                    break;
-                case "cool":
-                    coolSector(this);
-                    break;
-                case "look":
-                    System.out.println(sectorInfo());
-                    break;
-                case "help":
-                    System.out.println(helpCommands());
-                    break;
-                case "quit":
-                    break;
-                default:
-                    System.out.println("Unrecognized Command");
-                    break;
+            output.setLength(0);
+            execute(command, output);
+            if (output.length() > 0) {
+                System.out.println(output);
             }
         }
     }
 
     /**
-     * Abstract method from the Entity class. Does not apply to Player class. Do
-     * not use.
+     * Carries out a single user command without any console input or output.
+     *
+     * @param command Command to carry out (north, heat, look, etc.).
+     * @return Text response to the command (empty if there is none).
+     */
+    public String execute(String command) {
+        output.setLength(0);
+        execute(command, output);
+        return output.toString();
+    }
+
+    /**
+     * Carries out a single user command without any console input or output,
+     * appending the response to a buffer the caller can reuse.
      *
-     * @param clean
-     * @param player
+     * @param command Command to carry out (north, heat, look, etc.).
+     * @param out Buffer the text response is appended to.
+     */
+    public void execute(String command, StringBuilder out) {
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        long start = Metrics.ENABLED ? Metrics.COMMANDS.start() : 0;
+        dispatch(command, out);
+        if (Metrics.ENABLED) {
+            Metrics.COMMANDS.stop(start);
+        }
+        if (event.shouldCommit()) {
+            Sector current = getCurrentSector();
+            event.command = command;
+            event.player = getName();
+            event.sector = current.getName();
+            event.entities = current.entityCount();
+            event.commit();
+        }
+    }
+
+    /**
+     * Carries out a single user command.
+     *
+     * @param command Command to carry out (north, heat, look, etc.).
+     * @param out Buffer the text response is appended to.
+     */
+    private void dispatch(String command, StringBuilder out) {
+        switch (command) {
+            case "north":
+            case "south":
+            case "east":
+            case "west":
+                Sector next = getCurrentSector().getNeighbor(command);
+                if (next == null) {
+                    out.append("Room doesn't exist");
+                } else if (!move(next)) {
+                    out.append("Room is full");
+                }
+                break;
+            case "heat":
+                heatSector(this);
+                break;
+            case "cool":
+                coolSector(this);
+                break;
+            case "look":
+                sectorInfo(out);
+                break;
+            case "help":
+                out.append(HELP);
+                break;
+            case "quit":
+                break;
+            default:
+                out.append("Unrecognized Command");
+                break;
+        }
+    }
+
+    /**
+     * Returns a new Player with the same name, description, respect and
+     * Behavior.
+     *
+     * @return Copy of the Player.
      */
     @Override
-    public void react(boolean clean, Player player) {
+    public Entity copy() {
+        Player player = new Player(getName(), getArchetype());
+        player.respect = respect;
+        player.setBehavior(getBehavior());
+        return player;
     }
 
     /**
-     * Returns the Player's respect levels.
+     * Abstract method from the Entity class. Player does not react to its own
+     * actions.
      *
-     * @return Player's respect.
+     * @param clean True if the room was heated, False otherwise.
+     * @return Zero.
      */
-    public int getRespect() {
-        return respect;
+    @Override
+    public int getRespectChange(boolean clean) {
+        return 0;
     }
 
     /**
-     * Returns a list of commands that the user can parse.
+     * Abstract method from the Entity class. Player is never disturbed by its
+     * own actions.
      *
-     * @return Help Commands.
+     * @param clean True if the room was heated, False otherwise.
+     * @return False.
      */
-    private String helpCommands() {
-        String help = "Commands are case-sensitive\n\n"
-                + "north: Moves your character to the Sector in the North\n"
-                + "south: Moves your character to the Sector in the South\n"
-                + "east: Moves your character to the Sector in the East\n"
-                + "west: Moves your character to the Sector in the West\n"
-                + "heat: Makes the current Sector hotter\n"
-                + "cool: Makes the current Sector cooler\n"
-                + "look: Look at current information about the Sector\n"
-                + "quit: Quit the game\n";
-        return help;
+    @Override
+    public boolean isDisturbed(boolean clean) {
+        return false;
     }
 
     /**
-     * Returns current information about the Sector that the Player is in (other
-     * Entities, the Sector's name and description, it's state, etc.).
+     * A Player is told when a room is full, and is never moved into it
+     * later without being asked.
      *
-     * @return Sector information.
-     */
-    private String sectorInfo() {
-        String info = "You are in the " + getCurrentSector() + ". It is "
-                + getCurrentSector().getDescription() + ". It feels "
-                + getCurrentSector().getTemperature() + " in here.";
-        if (getCurrentSector().getNeighbor("north") != null) {
-            info += "\nTo the North is the " + getCurrentSector().
-                    getNeighbor("north");
-        }
-        if (getCurrentSector().getNeighbor("south") != null) {
-            info += "\nTo the South is the " + getCurrentSector().
-                    getNeighbor("south");
-        }
-        if (getCurrentSector().getNeighbor("east") != null) {
-            info += "\nTo the East is the " + getCurrentSector().
-                    getNeighbor("east");
-        }
-        if (getCurrentSector().getNeighbor("west") != null) {
-            info += "\nTo the West is the " + getCurrentSector().
-                    getNeighbor("west");
-        }
-        info += "\n\nYour current respect level is " + getRespect() + ". The "
-                + "current entities are in the sector\n";
+     * @return False.
+     */
+    @Override
+    protected boolean waitsForRoom() {
+        return false;
+    }
 
-        for (int i = 0; i < getCurrentSector().getEntities().size(); i++) {
-            if (!getCurrentSector().getEntities().get(i).toString()
-                    .equals(this.toString())) {
-                info += "-" + getCurrentSector().getEntities().get(i) + "\n";
+    /**
+     * Returns whether the Player's respect changed since the World was last
+     * saved (its location is saved with the Sectors).
+     *
+     * @return True if the respect changed, False otherwise.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Marks the Player as saved.
+     */
+    void clearDirty() {
+        dirty = false;
+    }
+
+    /**
+     * Returns the Player's respect levels.
+     *
+     * @return Player's respect.
+     */
+    public int getRespect() {
+        return respect;
+    }
+
+    /**
+     * Appends current information about the Sector that the Player is in
+     * (other Entities, the Sector's name and description, it's state, etc.).
+     * Only existing strings are appended, so no garbage is created once the
+     * buffer has grown large enough.
+     *
+     * @param out Buffer the Sector information is appended to.
+     */
+    private void sectorInfo(StringBuilder out) {
+        Sector sector = getCurrentSector();
+        out.append("You are in the ").append(sector.getName())
+                .append(". It is ").append(sector.getDescription())
+                .append(". It feels ").append(sector.getTemperature())
+                .append(" in here.");
+        for (int i = 0; i < EXITS.length; i++) {
+            Sector neighbor = sector.getNeighbor(Direction.fromIndex(i));
+            if (neighbor != null) {
+                out.append(EXITS[i]).append(neighbor.getName());
             }
         }
-        return info;
+        out.append("\n\nYour current respect level is ").append(respect)
+                .append(". The current entities are in the sector\n");
+        sector.listEntities(out, this);
     }
 
+    /**
+     * List of commands that the user can parse.
+     */
+    private static final String HELP = "Commands are case-sensitive\n\n"
+            + "north: Moves your character to the Sector in the North\n"
+            + "south: Moves your character to the Sector in the South\n"
+            + "east: Moves your character to the Sector in the East\n"
+            + "west: Moves your character to the Sector in the West\n"
+            + "heat: Makes the current Sector hotter\n"
+            + "cool: Makes the current Sector cooler\n"
+            + "look: Look at current information about the Sector\n"
+            + "quit: Quit the game\n";
+
+    /**
+     * Lead-in for each neighboring Sector (in Direction order).
+     */
+    private static final String[] EXITS = {"\nTo the North is the ",
+        "\nTo the South is the ", "\nTo the East is the ",
+        "\nTo the West is the "};
+
+    /**
+     * Buffer reused for the responses to the Player's commands.
+     */
+    private final StringBuilder output;
+
     /**
      * Player's respect level.
      */
     private int respect;
+
+    /**
+     * Whether the Player's respect changed since the World was last saved.
+     */
+    private volatile boolean dirty;
 }
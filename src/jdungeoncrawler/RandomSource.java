@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+/**
+ * Source of the random numbers used by Entities and the Simulation. Every
+ * number is computed from the seed, a stream number (the Entity's ID) and the
+ * position in that stream with the SplitMix64 mixing function (the generator
+ * behind java.util.SplittableRandom), so the source keeps no shared state:
+ * threads never contend for it, and a stream gives the same numbers no matter
+ * which thread draws them or in what order the streams are drawn.
+ *
+ * @author Daniel Truong
+ */
+public class RandomSource {
+
+    /**
+     * RandomSource class constructor with a seed taken from the clock (runs
+     * cannot be reproduced).
+     */
+    public RandomSource() {
+        this(mix(System.nanoTime() ^ System.currentTimeMillis()), false);
+    }
+
+    /**
+     * RandomSource class constructor with a fixed seed (runs with the same
+     * seed can be reproduced).
+     *
+     * @param seed Seed of the random numbers.
+     */
+    public RandomSource(long seed) {
+        this(seed, true);
+    }
+
+    /**
+     * RandomSource class constructor.
+     *
+     * @param seed Seed of the random numbers.
+     * @param seeded True if the seed was chosen, False if it was taken from
+     * the clock.
+     */
+    private RandomSource(long seed, boolean seeded) {
+        this.seed = seed;
+        this.seeded = seeded;
+    }
+
+    /**
+     * Returns a random number from a stream.
+     *
+     * @param stream Number of the stream (the ID of the Entity drawing it).
+     * @param index Position of the number in the stream.
+     * @return Random number (any int value).
+     */
+    public int roll(int stream, long index) {
+        long start = mix(seed + (stream + 1L) * STREAM_GAMMA);
+        return (int) (mix(start + (index + 1) * GOLDEN_GAMMA) >>> 32);
+    }
+
+    /**
+     * Returns the seed of the random numbers.
+     *
+     * @return Seed of the random numbers.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns whether the seed was chosen rather than taken from the clock.
+     *
+     * @return True if runs with this source can be reproduced, False
+     * otherwise.
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Scrambles a number with the SplitMix64 finalizer.
+     *
+     * @param z Number to scramble.
+     * @return Scrambled number.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Step between consecutive numbers of a stream (the golden ratio gamma
+     * of SplitMix64).
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Step between the starting points of consecutive streams.
+     */
+    private static final long STREAM_GAMMA = 0xD1B54A32D192ED03L;
+
+    /**
+     * Seed of the random numbers.
+     */
+    private final long seed;
+
+    /**
+     * True if the seed was chosen, False if it was taken from the clock.
+     */
+    private final boolean seeded;
+}
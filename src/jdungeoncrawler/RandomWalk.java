@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+/**
+ * Behavior that moves to a random neighboring Sector.
+ *
+ * @author Daniel Truong
+ */
+public class RandomWalk implements Behavior {
+
+    /**
+     * Picks one of the four directions at random; stays put if there is no
+     * neighbor that way.
+     *
+     * @param world World the Entity is in.
+     * @param sector Numerical ID of the Sector the Entity is in.
+     * @param roll Random number used to pick the direction.
+     * @return Numerical ID of the Sector to move to (-1 to stay put).
+     */
+    @Override
+    public int decide(World world, int sector, int roll) {
+        return world.getNeighborId(sector, Direction.fromIndex(roll & 3));
+    }
+
+    /**
+     * Shared instance (the Behavior holds no state).
+     */
+    public static final RandomWalk INSTANCE = new RandomWalk();
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for the reactions of every Entity in a Sector to it
+ * being heated or cooled, including the moves they cause.
+ *
+ * @author Daniel Truong
+ */
+@Name("jdungeoncrawler.Reaction")
+@Label("Reaction Cascade")
+@Category("JDungeonCrawler")
+@Description("Entities reacting to a Sector being heated or cooled")
+class ReactionEvent extends jdk.jfr.Event {
+
+    /**
+     * Name of the Sector.
+     */
+    @Label("Sector")
+    String sector;
+
+    /**
+     * True if the Sector was heated, False if it was cooled.
+     */
+    @Label("Heated")
+    boolean heated;
+
+    /**
+     * Number of Entities that reacted.
+     */
+    @Label("Entities")
+    int entities;
+
+    /**
+     * Number of Entities that tried to move away.
+     */
+    @Label("Movers")
+    int movers;
+
+    /**
+     * Change in the Player's respect.
+     */
+    @Label("Respect Change")
+    int respect;
+}
@@ -0,0 +1,321 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Paged save file holding the changes made to a World since it was loaded
+ * from its binary world file. Every Sector has a fixed-size page (its
+ * temperature and the IDs of the Entities in it), and a bitmap at the start
+ * of the file tells which pages have ever been written. Saving only writes
+ * the pages of Sectors that changed since the last save, and loading only
+ * reads the pages marked in the bitmap, so both take time in proportion to
+ * what changed rather than to the size of the World.
+ * <p>
+ * The Entities of the World must be registered (as they are when the World is
+ * loaded from a world file), since pages refer to them by ID.
+ *
+ * @author Daniel Truong
+ */
+public class SaveFile {
+
+    /**
+     * SaveFile class constructor. Opens the save file, creating an empty one
+     * if it does not exist yet.
+     *
+     * @param fileName Name of the save file.
+     * @param world World the save file belongs to.
+     * @throws IOException If the file cannot be opened or belongs to a World
+     * of a different size.
+     * @throws UnsupportedOperationException If the World is streamed (a
+     * streamed World does not record which Sectors changed).
+     */
+    public SaveFile(String fileName, World world) throws IOException {
+        if (world.isStreamed()) {
+            throw new UnsupportedOperationException(
+                    "A streamed World cannot be saved.");
+        }
+        this.world = world;
+        file = new RandomAccessFile(fileName, "rw");
+        channel = file.getChannel();
+        header = ByteBuffer.allocate(HEADER_SIZE);
+        bitmap = new byte[(world.size() + 7) / 8];
+        if (file.length() == 0) {
+            int capacity = 0;
+            for (int id = 0; id < world.size(); id++) {
+                capacity = Math.max(capacity, world.getCapacity(id));
+            }
+            pageSize = 8 + 4 * capacity;
+            writeHeader();
+            channel.write(ByteBuffer.wrap(bitmap), HEADER_SIZE);
+        } else {
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC
+                    || header.getInt() != world.size()) {
+                throw new IOException(fileName + " is not a save file for "
+                        + "this world.");
+            }
+            pageSize = header.getInt();
+            channel.read(ByteBuffer.wrap(bitmap), HEADER_SIZE);
+        }
+        page = ByteBuffer.allocate(pageSize);
+    }
+
+    /**
+     * Writes the pages of the Sectors that changed since the last save, and
+     * the Player's respect and location if they changed.
+     *
+     * @return Number of Sector pages written.
+     * @throws IOException If the file cannot be written.
+     */
+    public int save() throws IOException {
+        boolean playerChanged = world.getPlayer() != null
+                && world.getPlayer().isDirty();
+        List<Sector> changed = world.takeDirty();
+        for (Sector sector : changed) {
+            page.clear();
+            List<Entity> entities = sector.getEntities();
+            page.putInt(sector.getState());
+            int count = 0;
+            page.putInt(0);
+            for (Entity entity : entities) {
+                if (entity.getId() >= 0 && page.remaining() >= 4) {
+                    page.putInt(entity.getId());
+                    count++;
+                }
+            }
+            page.putInt(4, count);
+            page.flip();
+            channel.write(page, pageOffset(sector.getId()));
+            int index = sector.getId() / 8;
+            byte mask = (byte) (1 << (sector.getId() % 8));
+            if ((bitmap[index] & mask) == 0) {
+                bitmap[index] |= mask;
+                channel.write(ByteBuffer.wrap(bitmap, index, 1),
+                        HEADER_SIZE + index);
+            }
+        }
+        if (playerChanged || !changed.isEmpty()) {
+            writeHeader();
+        }
+        channel.force(false);
+        return changed.size();
+    }
+
+    /**
+     * Applies the saved pages to the World, which must be in the state it was
+     * loaded in from its binary world file. Every page is read and checked
+     * before any of them is applied, so a rejected file leaves the World
+     * unchanged.
+     *
+     * @return Number of Sector pages read.
+     * @throws IOException If the file cannot be read, or a page is cut short,
+     * names an unknown Entity, names an Entity another page names too, or
+     * names more Entities than its Sector can hold.
+     */
+    public int load() throws IOException {
+        ArrayList<Sector> sectors = new ArrayList<>();
+        ArrayList<Integer> states = new ArrayList<>();
+        ArrayList<int[]> members = new ArrayList<>();
+        BitSet placed = new BitSet();
+        for (int index = 0; index < bitmap.length; index++) {
+            if (bitmap[index] == 0) {
+                continue;
+            }
+            for (int bit = 0; bit < 8; bit++) {
+                if ((bitmap[index] & (1 << bit)) == 0) {
+                    continue;
+                }
+                Sector sector = world.getSector(index * 8 + bit);
+                page.clear();
+                channel.read(page, pageOffset(sector.getId()));
+                page.flip();
+                if (page.remaining() < 8) {
+                    throw new IOException("The save file is cut short at "
+                            + sector.getName() + ".");
+                }
+                int state = page.getInt();
+                int count = page.getInt();
+                if (count < 0 || count > page.remaining() / 4) {
+                    throw new IOException("The save file has a damaged page "
+                            + "for " + sector.getName() + ".");
+                }
+                int[] ids = new int[count];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = page.getInt();
+                }
+                sectors.add(sector);
+                states.add(state);
+                members.add(ids);
+            }
+        }
+        for (int i = 0; i < sectors.size(); i++) {
+            Sector sector = sectors.get(i);
+            if (members.get(i).length > sector.getCapacity()) {
+                throw new IOException("The save file puts more entities in "
+                        + sector.getName() + " than it can hold.");
+            }
+            for (int id : members.get(i)) {
+                if (id < 0 || world.getEntity(id) == null) {
+                    throw new IOException("The save file puts an unknown "
+                            + "entity in " + sector.getName() + ".");
+                }
+                if (placed.get(id)) {
+                    throw new IOException("The save file puts an entity in "
+                            + sector.getName() + " and another sector.");
+                }
+                placed.set(id);
+            }
+        }
+        for (int i = 0; i < sectors.size(); i++) {
+            sectors.get(i).setState(states.get(i));
+        }
+        for (int[] ids : members) {
+            for (int id : ids) {
+                Entity entity = world.getEntity(id);
+                if (entity.getCurrentSector() != null) {
+                    entity.getCurrentSector().removeEntity(entity);
+                }
+            }
+        }
+        for (int i = 0; i < sectors.size(); i++) {
+            for (int id : members.get(i)) {
+                Entity entity = world.getEntity(id);
+                if (!sectors.get(i).addEntity(entity)) {
+                    throw new IOException("The save file puts more entities "
+                            + "in " + sectors.get(i).getName()
+                            + " than it can hold.");
+                }
+                entity.setCurrentSector(sectors.get(i));
+            }
+        }
+        header.clear();
+        channel.read(header, 0);
+        header.position(RESPECT_OFFSET);
+        int respect = header.getInt();
+        if (world.getPlayer() != null && respect != NO_RESPECT) {
+            world.getPlayer().setRespect(respect);
+        }
+        world.takeDirty();
+        return sectors.size();
+    }
+
+    /**
+     * Closes the save file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException {
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * Writes the header (format marker, Sector count, page size and the
+     * Player's respect).
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    private void writeHeader() throws IOException {
+        header.clear();
+        header.putInt(MAGIC).putInt(world.size()).putInt(pageSize)
+                .putInt(world.getPlayer() == null ? NO_RESPECT
+                        : world.getPlayer().getRespect());
+        header.flip();
+        channel.write(header, 0);
+    }
+
+    /**
+     * Returns where the page of a Sector starts in the file.
+     *
+     * @param id Numerical ID of the Sector.
+     * @return Offset of the page in bytes.
+     */
+    long pageOffset(int id) {
+        return HEADER_SIZE + bitmap.length + (long) id * pageSize;
+    }
+
+    /**
+     * Marker at the start of every save file ("JDCS").
+     */
+    private static final int MAGIC = 0x4A444353;
+
+    /**
+     * Size in bytes of the header.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Position of the Player's respect in the header.
+     */
+    private static final int RESPECT_OFFSET = 12;
+
+    /**
+     * Respect value saved when the World has no Player.
+     */
+    private static final int NO_RESPECT = Integer.MIN_VALUE;
+
+    /**
+     * World the save file belongs to.
+     */
+    private final World world;
+
+    /**
+     * Open save file.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Channel of the open save file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Buffer for the header.
+     */
+    private final ByteBuffer header;
+
+    /**
+     * Which Sector pages have ever been written (one bit per Sector).
+     */
+    private final byte[] bitmap;
+
+    /**
+     * Size in bytes of every Sector page.
+     */
+    private final int pageSize;
+
+    /**
+     * Buffer for one Sector page.
+     */
+    private final ByteBuffer page;
+}
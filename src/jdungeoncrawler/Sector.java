@@ -23,11 +23,17 @@
  */
 package jdungeoncrawler;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Holds reference to the physical location that Entities will be residing in.
+ * The Entity list is guarded by the Sector's monitor, so Entities may be added,
+ * removed and listed from several threads at once.
  *
  * @author Daniel Truong
  */
@@ -42,95 +48,217 @@ public class Sector {
      * Cold, 1 = Cool, 2 = Warm, 3 = Hot).
      */
     public Sector(String name, String description, int state) {
+        this(name, description, state, DEFAULT_CAPACITY,
+                OverflowPolicy.REJECT);
+    }
+
+    /**
+     * Sector class constructor.
+     *
+     * @param name Name of the Sector.
+     * @param description Description of the Sector.
+     * @param state Numerical representation of the Sector's temperature (0 =
+     * Cold, 1 = Cool, 2 = Warm, 3 = Hot).
+     * @param capacity Maximum number of Entities the Sector can hold.
+     * @param overflow What happens to Entities moving in while the Sector is
+     * full.
+     */
+    public Sector(String name, String description, int state, int capacity,
+            OverflowPolicy overflow) {
         this.name = name;
         this.description = description;
         this.temperature = state;
-        entities = new ArrayList();
-        neighbors = new HashMap();
+        this.capacity = capacity;
+        this.overflow = overflow;
+        waiting = new ArrayDeque<>();
+        id = -1;
+        world = null;
+        entities = new ArrayList<>();
+        sorted = true;
+        dirty = false;
     }
 
     /**
-     * Executes the Quicksort algorithm on the Entity ArrayList in the Sector
-     * object.
+     * Sorts the Sector's Entity ArrayList by name, if Entities were added
+     * since it was last sorted.
+     */
+    private void sortEntities() {
+        if (!sorted) {
+            entities.sort(BY_NAME);
+            sorted = true;
+        }
+    }
+
+    /**
+     * Adds an Entity to the Sector (if the Sector is not at capacity). The
+     * Entities are only sorted again when they are next listed.
      *
-     * @param low Left-most index of the Entity ArrayList.
-     * @param high Right-most index of the Entity ArrayList.
+     * @param entity Entity object to add to the Sector.
+     * @return True if the Entity was added, False if the Sector is full.
      */
-    private void executeQuicksort(int low, int high) {
-        int qsValues[] = {low, high, low + (high - low) / 2};
-        /*
-        qsValues[0] = Lower-most index
-        qsValues[1] = Highest-most index
-        qsValues[2] = Pivot point
-         */
-        while (qsValues[0] <= qsValues[1]) {
-            while (entities.get(qsValues[0]).getName().compareTo(entities
-                    .get(qsValues[2]).getName()) < 0) {
-                qsValues[0] += 1;
-            }
-            while (entities.get(qsValues[1]).getName().compareTo(entities
-                    .get(qsValues[2]).getName()) > 0) {
-                qsValues[1] -= 1;
-            }
-            if (qsValues[0] <= qsValues[1]) {
-                Entity temp = entities.get(qsValues[0]);
-                entities.set(qsValues[0], entities.get(qsValues[1]));
-                entities.set(qsValues[1], temp);
-                qsValues[0] += 1;
-                qsValues[1] -= 1;
+    public synchronized boolean addEntity(Entity entity) {
+        if (entities.size() >= capacity) {
+            if (Metrics.ENABLED) {
+                Metrics.CAPACITY_HITS.increment();
             }
+            return false;
         }
-        if (low < qsValues[1]) {
-            executeQuicksort(low, qsValues[1]);
-        }
-        if (qsValues[0] < high) {
-            executeQuicksort(qsValues[0], high);
-        }
+        entities.add(entity);
+        sorted = entities.size() < 2;
+        markDirty();
+        return true;
     }
 
     /**
-     * Calls upon a sorting algorithm to sort the Sector's Entity ArrayList.
+     * Puts an Entity in line to move into the Sector once there is room.
+     *
+     * @param entity Entity waiting for the Sector.
      */
-    private void sortEntities() {
-        if (entities.size() > 1) {
-            executeQuicksort(0, entities.size() - 1);
+    synchronized void enqueue(Entity entity) {
+        if (!waiting.contains(entity)) {
+            waiting.add(entity);
         }
     }
 
     /**
-     * Adds an Entity to the Sector (if the ArrayList is no bigger than 10
-     * elements.
+     * Removes and returns the Entity first in line for the Sector.
      *
-     * @param entity Entity object to add to the Sector.
+     * @return Waiting Entity (null if no Entity is waiting).
      */
-    public void addEntity(Entity entity) {
-        if (entities.size() <= 10) {
-            entities.add(entity);
-            sortEntities();
+    synchronized Entity pollWaiting() {
+        return waiting.poll();
+    }
+
+    /**
+     * Puts an Entity back at the front of the line for the Sector.
+     *
+     * @param entity Entity waiting for the Sector.
+     */
+    synchronized void requeue(Entity entity) {
+        waiting.addFirst(entity);
+    }
+
+    /**
+     * Takes an Entity out of the line for the Sector.
+     *
+     * @param entity Entity that no longer waits for the Sector.
+     */
+    synchronized void withdraw(Entity entity) {
+        waiting.remove(entity);
+    }
+
+    /**
+     * Returns whether another Sector is a neighbor of this Sector.
+     *
+     * @param sector Sector to look for.
+     * @return True if the Sector is a neighbor, False otherwise.
+     */
+    public boolean isNeighbor(Sector sector) {
+        for (Direction direction : Direction.VALUES) {
+            if (getNeighbor(direction) == sector) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
      * Decrease the temperature of the Sector.
      */
     public void decreaseTemp() {
-        temperature -= 1;
+        setState(getState() - 1);
+        markDirty();
+        if (world != null) {
+            world.fireTemperatureChanged(this);
+        }
     }
 
     /**
      * Increase the temperature of the Sector.
      */
     public void increaseTemp() {
-        temperature += 1;
+        setState(getState() + 1);
+        markDirty();
+        if (world != null) {
+            world.fireTemperatureChanged(this);
+        }
     }
 
     /**
-     * Remove Entity object from the Sector.
+     * Sets the temperature of the Sector directly (used when replaying saved
+     * changes; listeners are not told).
+     *
+     * @param state Numerical representation of the Sector's temperature.
+     */
+    void setState(int state) {
+        if (world != null) {
+            world.setState(id, state);
+        } else {
+            temperature = state;
+        }
+    }
+
+    /**
+     * Returns the temperature the Sector holds itself (used before it is
+     * added to a World, and by the Sectors of a forked World).
+     *
+     * @return Sector temperature.
+     */
+    int getOwnState() {
+        return temperature;
+    }
+
+    /**
+     * Sets the temperature the Sector holds itself.
+     *
+     * @param state Numerical representation of the Sector's temperature.
+     */
+    void setOwnState(int state) {
+        temperature = state;
+    }
+
+    /**
+     * Remove Entity object from the Sector. The list is searched from the
+     * end, where the Entities that arrived last (and are most likely to leave
+     * again soon) are.
      *
      * @param entity Entity to remove.
      */
-    public void removeEntity(Entity entity) {
-        entities.remove(entity);
+    public synchronized void removeEntity(Entity entity) {
+        int index = entities.lastIndexOf(entity);
+        if (index >= 0) {
+            entities.remove(index);
+            markDirty();
+        }
+    }
+
+    /**
+     * Marks the Sector as changed since it was last saved, and tells its
+     * World the first time.
+     */
+    synchronized void markDirty() {
+        if (!dirty) {
+            dirty = true;
+            if (world != null) {
+                world.addDirty(this);
+            }
+        }
+    }
+
+    /**
+     * Marks the Sector as saved.
+     */
+    synchronized void clearDirty() {
+        dirty = false;
+    }
+
+    /**
+     * Returns whether the Sector changed since it was last saved.
+     *
+     * @return True if the Sector changed, False otherwise.
+     */
+    public synchronized boolean isDirty() {
+        return dirty;
     }
 
     /**
@@ -141,29 +269,135 @@ public class Sector {
      * @param sector Sector to set as neighbor.
      */
     public void setNeighbor(int direction, Sector sector) {
-        switch (direction) {
-            case 0:
-                neighbors.put("north", sector);
-                break;
-            case 1:
-                neighbors.put("south", sector);
-                break;
-            case 2:
-                neighbors.put("east", sector);
-                break;
-            default:
-                neighbors.put("west", sector);
-                break;
-        }
+        setNeighbor(Direction.fromIndex(direction), sector);
     }
 
     /**
-     * Returns the ArrayList of Entities in the Sector.
+     * Sets reference to neighbors of the current Sector. The Sector must
+     * already be part of a World.
+     *
+     * @param direction Direction of the neighbor.
+     * @param sector Sector to set as neighbor.
+     */
+    public void setNeighbor(Direction direction, Sector sector) {
+        world.setNeighbor(id, direction, sector);
+    }
+
+    /**
+     * Sets the World the Sector is part of and its numerical ID (assigned by
+     * the World).
+     *
+     * @param world World holding the Sector.
+     * @param id Numerical ID of the Sector.
+     */
+    void setWorld(World world, int id) {
+        this.world = world;
+        this.id = id;
+    }
+
+    /**
+     * Returns the World the Sector is part of.
+     *
+     * @return World holding the Sector (null if it is not part of a World).
+     */
+    World getWorld() {
+        return world;
+    }
+
+    /**
+     * Returns the numerical ID of the Sector.
+     *
+     * @return Sector ID (-1 if the Sector is not part of a World).
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns a snapshot of the Entities in the Sector, sorted by name. Later
+     * changes to the Sector are not reflected in the returned list. Callers
+     * that only need the count or do not care about the order should use
+     * entityCount() or forEachEntity(), which neither sort nor copy.
      *
      * @return List of Entities in the Sector.
      */
-    public ArrayList<Entity> getEntities() {
-        return entities;
+    public synchronized List<Entity> getEntities() {
+        sortEntities();
+        return Collections.unmodifiableList(new ArrayList<>(entities));
+    }
+
+    /**
+     * Returns the number of Entities in the Sector, without copying or
+     * sorting them.
+     *
+     * @return Number of Entities.
+     */
+    public synchronized int entityCount() {
+        return entities.size();
+    }
+
+    /**
+     * Calls an action for every Entity in the Sector, in no particular order,
+     * without copying or sorting them. The Sector stays locked while the
+     * action runs, so the action must not move Entities.
+     *
+     * @param action Action to call for every Entity.
+     */
+    public synchronized void forEachEntity(Consumer<? super Entity> action) {
+        for (int i = 0; i < entities.size(); i++) {
+            action.accept(entities.get(i));
+        }
+    }
+
+    /**
+     * Appends one line per Entity in the Sector ("-" followed by the Entity),
+     * sorted by name, without copying the Entity list.
+     *
+     * @param out Buffer the Entities are appended to.
+     * @param skip Entity to leave out of the listing (compared by identity).
+     */
+    public synchronized void listEntities(StringBuilder out, Entity skip) {
+        sortEntities();
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            if (entity != skip) {
+                out.append('-').append(entity).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Returns whether a Sector must be locked before another one when both
+     * are locked together. Locking in this order keeps moves between Sectors
+     * free of deadlocks.
+     *
+     * @param other Other Sector being locked.
+     * @return True if this Sector is locked first, False otherwise.
+     */
+    boolean locksBefore(Sector other) {
+        if (id != other.id) {
+            return id < other.id;
+        }
+        return System.identityHashCode(this)
+                < System.identityHashCode(other);
+    }
+
+    /**
+     * Returns the maximum number of Entities the Sector can hold.
+     *
+     * @return Sector capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns what happens to Entities moving in while the Sector is full.
+     *
+     * @return Sector overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflow;
     }
 
     /**
@@ -172,7 +406,7 @@ public class Sector {
      * @return Sector temperature.
      */
     public int getState() {
-        return temperature;
+        return world != null ? world.getState(id) : temperature;
     }
 
     /**
@@ -182,7 +416,18 @@ public class Sector {
      * @return Sector object at specified direction.
      */
     public Sector getNeighbor(String direction) {
-        return neighbors.get(direction);
+        Direction match = Direction.fromName(direction);
+        return match == null ? null : getNeighbor(match);
+    }
+
+    /**
+     * Returns a neighbor of the Sector (based on direction).
+     *
+     * @param direction Direction of the neighbor.
+     * @return Sector object at specified direction.
+     */
+    public Sector getNeighbor(Direction direction) {
+        return world.getNeighbor(id, direction);
     }
 
     /**
@@ -209,7 +454,7 @@ public class Sector {
      * @return Current temperature of the Sector.
      */
     public String getTemperature() {
-        switch (temperature) {
+        switch (getState()) {
             case 3:
                 return "hot";
             case 2:
@@ -232,18 +477,60 @@ public class Sector {
         return getName();
     }
 
+    /**
+     * Number of Entities a Sector holds when the world file does not say.
+     */
+    public static final int DEFAULT_CAPACITY = 11;
+
+    /**
+     * Orders Entities by name.
+     */
+    private static final Comparator<Entity> BY_NAME
+            = Comparator.comparing(Entity::getName);
+
     /**
      * List of Entities to be stored in Sector.
      */
     private final ArrayList<Entity> entities;
 
     /**
-     * HashMap reference for directions of neighboring sectors.
+     * Entities waiting to move into the Sector once there is room.
+     */
+    private final ArrayDeque<Entity> waiting;
+
+    /**
+     * Maximum number of Entities the Sector can hold.
+     */
+    private final int capacity;
+
+    /**
+     * What happens to Entities moving in while the Sector is full.
+     */
+    private final OverflowPolicy overflow;
+
+    /**
+     * Whether the Sector changed since it was last saved.
+     */
+    private boolean dirty;
+
+    /**
+     * Whether the Entity list is currently sorted by name.
+     */
+    private boolean sorted;
+
+    /**
+     * World holding the Sector and its neighbor table.
+     */
+    private World world;
+
+    /**
+     * Numerical ID of the Sector within its World.
      */
-    private final HashMap<String, Sector> neighbors;
+    private int id;
 
     /**
-     * Temperature of the Sector (0 = cold, 1 = cool, 2 = warm, 3 = hot).
+     * Temperature of the Sector (0 = cold, 1 = cool, 2 = warm, 3 = hot) while
+     * it is not held in a World's temperature table.
      */
     private int temperature;
 
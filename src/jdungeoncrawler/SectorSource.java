@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.List;
+
+/**
+ * Supplies the Sectors of a World that are not held in memory from the start
+ * (e.g. Sectors decoded from a binary world file the first time they are
+ * used). The Entities in a Sector are supplied along with it.
+ *
+ * @author Daniel Truong
+ */
+interface SectorSource {
+
+    /**
+     * Returns the number of Sectors the source holds.
+     *
+     * @return Sector count.
+     */
+    int size();
+
+    /**
+     * Returns a Sector by numerical ID, decoding it if it was not used yet.
+     *
+     * @param id Numerical ID of the Sector.
+     * @return Sector with the given ID.
+     */
+    Sector getSector(int id);
+
+    /**
+     * Returns a Sector by name, decoding it if it was not used yet.
+     *
+     * @param name Name of the Sector.
+     * @return Sector with the given name (null if not found).
+     */
+    Sector getSector(String name);
+
+    /**
+     * Returns an Entity by numerical ID, decoding the Sector it started in
+     * if it was not used yet (a source that evicts Sectors may only find the
+     * Entities held in memory).
+     *
+     * @param id Numerical ID of the Entity.
+     * @return Entity with the given ID (null if there is none).
+     */
+    Entity getEntity(int id);
+
+    /**
+     * Returns the numerical ID of the neighbor of a Sector (based on
+     * direction), without decoding either Sector.
+     *
+     * @param id Numerical ID of the Sector.
+     * @param direction Direction of the neighbor.
+     * @return Sector ID at the direction (-1 if there is none).
+     */
+    int getNeighborId(int id, Direction direction);
+
+    /**
+     * Returns the capacity of a Sector, without decoding it.
+     *
+     * @param id Numerical ID of the Sector.
+     * @return Sector capacity.
+     */
+    int getCapacity(int id);
+
+    /**
+     * Returns the number of Sectors held in memory.
+     *
+     * @return Number of Sectors held in memory.
+     */
+    int heldSectors();
+
+    /**
+     * Returns the Sectors held in memory, without decoding or loading any
+     * other Sector (or changing which Sectors are evicted first).
+     *
+     * @return Snapshot of the Sectors held in memory.
+     */
+    List<Sector> getHeldSectors();
+
+    /**
+     * Returns whether Sectors may be evicted from memory again once they
+     * were decoded. References to evicted Sectors and Entities go stale, so
+     * they must not be kept by callers.
+     *
+     * @return True if Sectors may be evicted, False otherwise.
+     */
+    boolean evicts();
+}
@@ -0,0 +1,479 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs the game world as a simulation where every non-player Entity attempts
+ * to move once per tick, wherever its Behavior decides. The Sectors are split
+ * into partitions of consecutive Sector IDs that are processed in parallel.
+ * Every partition decides its moves and applies the ones that stay inside it;
+ * moves that cross into another partition are applied in a second phase, once
+ * every Entity has decided, so no Entity moves twice in one tick. Anything a
+ * move could cause outside its partition waits for the second phase too: an
+ * Entity that would spill over from a full Sector into a neighbor is moved
+ * there, and the Entities queued for the Sectors that were left are let in
+ * there.
+ * <p>
+ * Every Entity draws its random numbers from its own stream of the World's
+ * RandomSource, and the second phase runs one partition after another, so
+ * two simulations of the same seeded World with the same number of threads
+ * make the same moves.
+ * <p>
+ * Given a ChunkMap, the simulation only moves the Entities of the active
+ * chunks (near a Player), and the active chunks are shared out between the
+ * partitions instead of the Sector ID ranges, so a tick costs as much as the
+ * active area rather than the whole World. When a chunk wakes up, each of its
+ * Entities catches up on the ticks it slept, up to the chunk's diameter in
+ * moves (enough to reach anywhere in the chunk).
+ *
+ * @author Daniel Truong
+ */
+public class Simulation {
+
+    /**
+     * Simulation class constructor (one partition per available processor).
+     *
+     * @param world World to simulate.
+     */
+    public Simulation(World world) {
+        this(world, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Simulation class constructor.
+     *
+     * @param world World to simulate.
+     * @param threads Number of threads (and partitions) to simulate with.
+     */
+    public Simulation(World world, int threads) {
+        this(world, threads, null);
+    }
+
+    /**
+     * Simulation class constructor.
+     *
+     * @param world World to simulate.
+     * @param threads Number of threads (and partitions) to simulate with.
+     * @param chunks Chunks of the World, to only simulate the ones near a
+     * Player (null to simulate every Sector).
+     */
+    public Simulation(World world, int threads, ChunkMap chunks) {
+        this.world = world;
+        this.chunks = chunks;
+        this.partitions = Math.max(1, Math.min(threads, world.size()));
+        partitionSize = (world.size() + partitions - 1) / partitions;
+        pool = new ForkJoinPool(threads);
+        crossMovers = new ArrayList<>();
+        crossTargets = new ArrayList<>();
+        freed = new ArrayList<>();
+        batches = new Batch[partitions];
+        for (int i = 0; i < partitions; i++) {
+            batches[i] = new Batch();
+            crossMovers.add(new ArrayList<Entity>());
+            crossTargets.add(new ArrayList<Sector>());
+            freed.add(new ArrayList<Sector>());
+        }
+        active = new int[0];
+        owner = chunks == null ? null : new int[chunks.size()];
+        sleptAt = chunks == null ? null : new long[chunks.size()];
+        if (owner != null) {
+            Arrays.fill(owner, -1);
+        }
+        ticks = 0;
+    }
+
+    /**
+     * Advances the simulation by one tick.
+     */
+    public void tick() {
+        if (chunks != null) {
+            assignChunks();
+        }
+        runPartitions();
+        for (int i = 0; i < partitions; i++) {
+            applyDeferredMoves(i);
+        }
+        ticks++;
+    }
+
+    /**
+     * Shares the active chunks out between the partitions if they changed
+     * since the last tick, and catches up the chunks that woke up.
+     */
+    private void assignChunks() {
+        int[] current = chunks.getActive();
+        if (current == active) {
+            return;
+        }
+        int[] woken = new int[current.length];
+        int wokenCount = 0;
+        for (int chunk : current) {
+            if (owner[chunk] < 0) {
+                woken[wokenCount++] = chunk;
+            }
+            owner[chunk] = -2;
+        }
+        for (int chunk : active) {
+            if (owner[chunk] >= 0) {
+                owner[chunk] = -1;
+                sleptAt[chunk] = ticks;
+            }
+        }
+        for (int i = 0; i < current.length; i++) {
+            owner[current[i]] = (int) ((long) i * partitions / current.length);
+        }
+        active = current;
+        for (int i = 0; i < wokenCount; i++) {
+            catchUp(woken[i]);
+        }
+    }
+
+    /**
+     * Moves the Entities of a chunk that woke up for the ticks it slept (at
+     * most the chunk's diameter in moves each).
+     *
+     * @param chunk ID of the chunk.
+     */
+    private void catchUp(int chunk) {
+        long steps = Math.min(ticks - sleptAt[chunk],
+                chunks.getDiameter(chunk));
+        if (steps <= 0) {
+            return;
+        }
+        Batch batch = new Batch();
+        int[] members = chunks.getMembers();
+        for (int i = chunks.getStart(chunk); i < chunks.getStart(chunk + 1);
+                i++) {
+            gather(batch, members[i]);
+        }
+        for (int i = 0; i < batch.count; i++) {
+            for (long step = 0; step < steps; step++) {
+                batch.entities[i].attemptMove();
+            }
+        }
+    }
+
+    /**
+     * Adds every non-player Entity of a Sector to a batch.
+     *
+     * @param batch Batch to add to.
+     * @param id Numerical ID of the Sector.
+     */
+    private void gather(Batch batch, int id) {
+        batch.gathering = id;
+        world.getSector(id).forEachEntity(batch);
+    }
+
+    /**
+     * Runs one task per partition on the pool to decide this tick's moves and
+     * waits for all of them.
+     */
+    private void runPartitions() {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            final int partition = i;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    tickPartition(partition);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee) {
+            throw new IllegalStateException("Simulation tick failed.",
+                    ee.getCause());
+        }
+    }
+
+    /**
+     * Lets the queued Entities into the Sectors a partition's Entities left,
+     * then applies the moves the partition deferred (into other partitions,
+     * or spilling over from a full Sector). The partitions are done one after
+     * another, so Sectors that fill up admit the same Entities on every run.
+     *
+     * @param partition Index of the partition.
+     */
+    private void applyDeferredMoves(int partition) {
+        ArrayList<Sector> left = freed.get(partition);
+        for (int i = 0; i < left.size(); i++) {
+            Entity.admitWaiting(left.get(i));
+        }
+        left.clear();
+        ArrayList<Entity> movers = crossMovers.get(partition);
+        ArrayList<Sector> targets = crossTargets.get(partition);
+        for (int i = 0; i < movers.size(); i++) {
+            movers.get(i).move(targets.get(i));
+        }
+        movers.clear();
+        targets.clear();
+    }
+
+    /**
+     * Decides a move for every non-player Entity in a partition, applies the
+     * moves that stay inside the partition and defers the others. The
+     * Entities are first gathered into flat arrays, then their Behaviors
+     * decide in one pass, then the moves are applied. Moves applied here
+     * never spill over or let queued Entities in, since either could reach
+     * into another partition.
+     *
+     * @param partition Index of the partition.
+     */
+    private void tickPartition(int partition) {
+        int low = partition * partitionSize;
+        int high = Math.min(low + partitionSize, world.size());
+        Batch batch = batches[partition];
+        batch.count = 0;
+        if (chunks == null) {
+            for (int id = low; id < high; id++) {
+                gather(batch, id);
+            }
+        } else {
+            int[] members = chunks.getMembers();
+            int first = (partition * active.length + partitions - 1)
+                    / partitions;
+            int last = ((partition + 1) * active.length + partitions - 1)
+                    / partitions;
+            for (int i = first; i < last; i++) {
+                for (int j = chunks.getStart(active[i]);
+                        j < chunks.getStart(active[i] + 1); j++) {
+                    gather(batch, members[j]);
+                }
+            }
+        }
+
+        for (int i = 0; i < batch.count; i++) {
+            Entity entity = batch.entities[i];
+            batch.targets[i] = entity.getBehavior().decide(world,
+                    batch.sectors[i], entity.nextRoll());
+        }
+
+        for (int i = 0; i < batch.count; i++) {
+            int target = batch.targets[i];
+            if (target < 0) {
+                continue;
+            }
+            Sector sector = world.getSector(target);
+            if (chunks == null ? target >= low && target < high
+                    : isOwned(partition, target)) {
+                Sector left = batch.entities[i].advance(sector);
+                if (left != null) {
+                    if (left != sector) {
+                        freed.get(partition).add(left);
+                    }
+                    continue;
+                }
+                if (sector.getOverflowPolicy() != OverflowPolicy.SPILL) {
+                    continue;
+                }
+            }
+            crossMovers.get(partition).add(batch.entities[i]);
+            crossTargets.get(partition).add(sector);
+        }
+    }
+
+    /**
+     * Returns whether a Sector is in an active chunk of a partition.
+     *
+     * @param partition Index of the partition.
+     * @param id Numerical ID of the Sector.
+     * @return True if the partition moves the Sector's Entities this tick.
+     */
+    private boolean isOwned(int partition, int id) {
+        int chunk = chunks.getChunk(id);
+        return chunk >= 0 && owner[chunk] == partition;
+    }
+
+    /**
+     * Entities of one partition and their decisions for the current tick,
+     * kept in flat arrays that are reused from tick to tick.
+     */
+    private static class Batch implements Consumer<Entity> {
+
+        /**
+         * Batch class constructor.
+         */
+        Batch() {
+            entities = new Entity[16];
+            sectors = new int[16];
+            targets = new int[16];
+            count = 0;
+            gathering = -1;
+        }
+
+        /**
+         * Adds an Entity of the Sector being gathered to the batch, unless it
+         * is a Player.
+         *
+         * @param entity Entity of the Sector.
+         */
+        @Override
+        public void accept(Entity entity) {
+            if (!(entity instanceof Player)) {
+                add(entity, gathering);
+            }
+        }
+
+        /**
+         * Adds an Entity to the batch, growing the arrays if needed.
+         *
+         * @param entity Entity to add.
+         * @param sector Numerical ID of the Sector the Entity is in.
+         */
+        void add(Entity entity, int sector) {
+            if (count == entities.length) {
+                entities = Arrays.copyOf(entities, count * 2);
+                sectors = Arrays.copyOf(sectors, count * 2);
+                targets = Arrays.copyOf(targets, count * 2);
+            }
+            entities[count] = entity;
+            sectors[count] = sector;
+            count++;
+        }
+
+        /**
+         * Entities in the partition.
+         */
+        private Entity[] entities;
+
+        /**
+         * Numerical ID of the Sector each Entity is in.
+         */
+        private int[] sectors;
+
+        /**
+         * Numerical ID of the Sector each Entity decided to move to (-1 to
+         * stay put).
+         */
+        private int[] targets;
+
+        /**
+         * Number of Entities in the batch.
+         */
+        private int count;
+
+        /**
+         * Numerical ID of the Sector whose Entities are being gathered.
+         */
+        private int gathering;
+    }
+
+    /**
+     * Returns the number of ticks simulated so far.
+     *
+     * @return Tick count.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Stops the threads used by the simulation.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * World being simulated.
+     */
+    private final World world;
+
+    /**
+     * Number of partitions the Sectors are split into.
+     */
+    private final int partitions;
+
+    /**
+     * Number of consecutive Sector IDs in each partition.
+     */
+    private final int partitionSize;
+
+    /**
+     * Threads running the partitions.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Entities and decisions of each partition.
+     */
+    private final Batch[] batches;
+
+    /**
+     * Entities (per partition) moving into another partition this tick, or
+     * spilling over from a full Sector.
+     */
+    private final ArrayList<ArrayList<Entity>> crossMovers;
+
+    /**
+     * Sectors (per partition) the deferred Entities are moving into.
+     */
+    private final ArrayList<ArrayList<Sector>> crossTargets;
+
+    /**
+     * Sectors (per partition) that Entities left this tick, in the order
+     * they were left.
+     */
+    private final ArrayList<ArrayList<Sector>> freed;
+
+    /**
+     * Chunks of the World (null to simulate every Sector).
+     */
+    private final ChunkMap chunks;
+
+    /**
+     * Active chunks of the current tick, in ascending order.
+     */
+    private int[] active;
+
+    /**
+     * Partition moving the Entities of every chunk (-1 while it sleeps).
+     */
+    private final int[] owner;
+
+    /**
+     * Tick every chunk last went to sleep at.
+     */
+    private final long[] sleptAt;
+
+    /**
+     * Number of ticks simulated so far.
+     */
+    private long ticks;
+}
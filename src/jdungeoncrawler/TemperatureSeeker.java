@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+/**
+ * Behavior that moves towards warmer (or colder) Sectors: the Entity moves to
+ * the neighbor with the most preferable temperature, as long as it is better
+ * than the Sector it is in. Ties between neighbors are broken by the roll.
+ *
+ * @author Daniel Truong
+ */
+public class TemperatureSeeker implements Behavior {
+
+    /**
+     * TemperatureSeeker class constructor.
+     *
+     * @param warm True to seek warm Sectors, False to seek cold Sectors.
+     */
+    public TemperatureSeeker(boolean warm) {
+        this.warm = warm;
+    }
+
+    /**
+     * Chooses the neighbor with the most preferable temperature.
+     *
+     * @param world World the Entity is in.
+     * @param sector Numerical ID of the Sector the Entity is in.
+     * @param roll Random number used to break ties between neighbors.
+     * @return Numerical ID of the Sector to move to (-1 to stay put).
+     */
+    @Override
+    public int decide(World world, int sector, int roll) {
+        int best = -1;
+        int bestState = world.getState(sector);
+        for (int i = 0; i < 4; i++) {
+            int neighbor = world.getNeighborId(sector,
+                    Direction.fromIndex((i + roll) & 3));
+            if (neighbor >= 0) {
+                int state = world.getState(neighbor);
+                if (warm ? state > bestState : state < bestState) {
+                    best = neighbor;
+                    bestState = state;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Shared instance that seeks warm Sectors (used by Allies).
+     */
+    public static final TemperatureSeeker WARM = new TemperatureSeeker(true);
+
+    /**
+     * Shared instance that seeks cold Sectors (used by Enemies).
+     */
+    public static final TemperatureSeeker COLD = new TemperatureSeeker(false);
+
+    /**
+     * True to seek warm Sectors, False to seek cold Sectors.
+     */
+    private final boolean warm;
+}
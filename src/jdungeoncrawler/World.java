@@ -0,0 +1,745 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds every Sector of the game world along with the Player entity, indexed
+ * by name and by numerical ID. Neighbors of every Sector are kept in a single
+ * table of Sector IDs (four entries per Sector, -1 for no neighbor), and the
+ * temperatures of every Sector in a single array indexed by Sector ID.
+ * <p>
+ * A World can be forked into copy-on-write snapshots that share its Sector
+ * names, descriptions and neighbor table. A fork reads the Sectors of the
+ * World it was forked from, and only creates its own copy of a Sector (and
+ * the Entities in it) the first time the Sector is changed: when an Entity
+ * moves in or out, or its temperature changes. The memory of a fork grows
+ * with the part of the World it has changed rather than with the size of the
+ * World or the part it has looked at. The forked World must not change while
+ * its forks are in use.
+ * <p>
+ * The Sectors of a World read from a binary world file are supplied by a
+ * SectorSource, which decodes each Sector (and the Entities in it) the first
+ * time it is used. A streamed World goes further: its source keeps only a
+ * bounded number of Sectors in memory, so the World has no neighbor or
+ * temperature table, cannot be forked and does not track changed Sectors.
+ *
+ * @author Daniel Truong
+ */
+public class World {
+
+    /**
+     * World class constructor.
+     */
+    public World() {
+        sectors = new ArrayList<>();
+        index = new HashMap<>();
+        neighbors = new int[16 * 4];
+        Arrays.fill(neighbors, -1);
+        temperatures = new float[16];
+        template = null;
+        forked = null;
+        listeners = new CopyOnWriteArrayList<>();
+        dirty = new ConcurrentLinkedQueue<>();
+        entities = new ArrayList<>();
+        player = null;
+        random = new RandomSource();
+        store = null;
+        source = null;
+    }
+
+    /**
+     * World class constructor for a copy-on-write fork.
+     *
+     * @param template World the fork starts from.
+     */
+    private World(World template) {
+        sectors = null;
+        index = null;
+        neighbors = template.neighbors;
+        temperatures = null;
+        this.template = template;
+        forked = new HashMap<>();
+        listeners = new CopyOnWriteArrayList<>();
+        dirty = new ConcurrentLinkedQueue<>();
+        entities = new ArrayList<>();
+        player = null;
+        random = template.random;
+        store = null;
+        source = null;
+    }
+
+    /**
+     * Adds a Sector to the World and assigns it the next numerical ID.
+     *
+     * @param sector Sector to add to the World.
+     */
+    public void addSector(Sector sector) {
+        if (template != null) {
+            throw new UnsupportedOperationException(
+                    "Sectors cannot be added to a forked World.");
+        }
+        if (source != null) {
+            throw new UnsupportedOperationException(
+                    "Sectors cannot be added to a World read from a binary "
+                    + "world file.");
+        }
+        if ((sectors.size() + 1) * 4 > neighbors.length) {
+            int length = neighbors.length;
+            neighbors = Arrays.copyOf(neighbors, length * 2);
+            Arrays.fill(neighbors, length, neighbors.length, -1);
+            temperatures = Arrays.copyOf(temperatures, length / 2);
+        }
+        temperatures[sectors.size()] = sector.getOwnState();
+        sector.setWorld(this, sectors.size());
+        sectors.add(sector);
+        index.put(sector.getName(), sector);
+    }
+
+    /**
+     * Returns a Sector by name.
+     *
+     * @param name Name of the Sector.
+     * @return Sector with the given name (null if not found).
+     */
+    public Sector getSector(String name) {
+        if (template != null) {
+            Sector sector = template.getSector(name);
+            return sector == null ? null : getSector(sector.getId());
+        }
+        if (source != null) {
+            return source.getSector(name);
+        }
+        return index.get(name);
+    }
+
+    /**
+     * Returns a Sector by numerical ID. A fork returns the Sector of the
+     * World it was forked from until it has its own copy, so the Sector must
+     * not be changed directly; Entities moving into it use ownSector().
+     *
+     * @param id Numerical ID of the Sector.
+     * @return Sector with the given ID.
+     */
+    public Sector getSector(int id) {
+        if (template != null) {
+            Sector sector = forked.get(id);
+            return sector != null ? sector : template.getSector(id);
+        }
+        if (source != null) {
+            return source.getSector(id);
+        }
+        return sectors.get(id);
+    }
+
+    /**
+     * Returns the World's own copy of a Sector, for a change to be made to
+     * it. A fork creates its copy first if it has none yet; any other World
+     * returns the Sector itself.
+     *
+     * @param id Numerical ID of the Sector.
+     * @return Sector with the given ID that belongs to this World.
+     */
+    Sector ownSector(int id) {
+        if (template != null) {
+            Sector sector = forked.get(id);
+            return sector != null ? sector : forkSector(id);
+        }
+        return getSector(id);
+    }
+
+    /**
+     * Creates the fork's own copy of a template Sector, along with copies of
+     * the Entities in it.
+     *
+     * @param id Numerical ID of the Sector.
+     * @return Forked Sector.
+     */
+    private Sector forkSector(int id) {
+        Sector original = template.getSector(id);
+        Sector sector = new Sector(original.getName(),
+                original.getDescription(), original.getState(),
+                original.getCapacity(), original.getOverflowPolicy());
+        sector.setWorld(this, id);
+        forked.put(id, sector);
+        for (Entity entity : original.getEntities()) {
+            Entity copy = entity == template.getPlayer() ? player
+                    : entity.copy();
+            copy.setId(entity.getId());
+            sector.addEntity(copy);
+            copy.setCurrentSector(sector);
+        }
+        return sector;
+    }
+
+    /**
+     * Returns the neighbor of a Sector (based on direction).
+     *
+     * @param id Numerical ID of the Sector.
+     * @param direction Direction of the neighbor.
+     * @return Sector at the direction (null if there is none).
+     */
+    public Sector getNeighbor(int id, Direction direction) {
+        int neighbor = getNeighborId(id, direction);
+        return neighbor < 0 ? null : getSector(neighbor);
+    }
+
+    /**
+     * Returns the numerical ID of the neighbor of a Sector (based on
+     * direction), without looking up the Sector itself.
+     *
+     * @param id Numerical ID of the Sector.
+     * @param direction Direction of the neighbor.
+     * @return Sector ID at the direction (-1 if there is none).
+     */
+    public int getNeighborId(int id, Direction direction) {
+        if (neighbors == null) {
+            return source.getNeighborId(id, direction);
+        }
+        return neighbors[id * 4 + direction.ordinal()];
+    }
+
+    /**
+     * Returns the capacity of a Sector, without decoding it.
+     *
+     * @param id Numerical ID of the Sector.
+     * @return Sector capacity.
+     */
+    public int getCapacity(int id) {
+        if (template != null) {
+            return template.getCapacity(id);
+        }
+        if (source != null) {
+            return source.getCapacity(id);
+        }
+        return sectors.get(id).getCapacity();
+    }
+
+    /**
+     * Returns the temperature of a Sector.
+     *
+     * @param id Numerical ID of the Sector.
+     * @return Sector temperature.
+     */
+    public int getState(int id) {
+        if (template != null) {
+            Sector sector = forked.get(id);
+            return sector != null ? sector.getOwnState()
+                    : template.getState(id);
+        }
+        if (temperatures == null) {
+            return getSector(id).getOwnState();
+        }
+        return Math.round(temperatures[id]);
+    }
+
+    /**
+     * Sets the temperature of a Sector.
+     *
+     * @param id Numerical ID of the Sector.
+     * @param state Numerical representation of the Sector's temperature.
+     */
+    public void setState(int id, int state) {
+        if (temperatures == null) {
+            ownSector(id).setOwnState(state);
+        } else {
+            temperatures[id] = state;
+        }
+    }
+
+    /**
+     * Returns the temperature table of the World (null for a fork or a
+     * streamed World, whose Sectors hold their own temperatures).
+     *
+     * @return Temperature of every Sector, indexed by Sector ID.
+     */
+    float[] getTemperatures() {
+        return temperatures;
+    }
+
+    /**
+     * Replaces the temperature table of the World.
+     *
+     * @param temperatures Temperature of every Sector, indexed by Sector ID.
+     */
+    void setTemperatures(float[] temperatures) {
+        this.temperatures = temperatures;
+    }
+
+    /**
+     * Replaces the neighbor table of the World.
+     *
+     * @param neighbors Neighbor Sector IDs (index = Sector ID * 4 +
+     * direction).
+     */
+    void setNeighborTable(int[] neighbors) {
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * Returns the neighbor table of the World.
+     *
+     * @return Neighbor Sector IDs (index = Sector ID * 4 + direction; null
+     * for a streamed World).
+     */
+    int[] getNeighborTable() {
+        return neighbors;
+    }
+
+    /**
+     * Sets the neighbor of a Sector.
+     *
+     * @param id Numerical ID of the Sector.
+     * @param direction Direction of the neighbor.
+     * @param neighbor Sector to set as neighbor (null to remove it).
+     */
+    public void setNeighbor(int id, Direction direction, Sector neighbor) {
+        if (neighbors == null) {
+            throw new UnsupportedOperationException(
+                    "Neighbors cannot be changed in a streamed World.");
+        }
+        if (template != null && neighbors == template.neighbors) {
+            neighbors = neighbors.clone();
+        }
+        neighbors[id * 4 + direction.ordinal()] = neighbor == null ? -1
+                : neighbor.getId();
+    }
+
+    /**
+     * Returns the number of Sectors in the World.
+     *
+     * @return Sector count.
+     */
+    public int size() {
+        if (template != null) {
+            return template.size();
+        }
+        return source != null ? source.size() : sectors.size();
+    }
+
+    /**
+     * Returns a copy-on-write fork of the World with its own Player, so the
+     * fork can be played without affecting this World.
+     *
+     * @return Forked World.
+     */
+    public World fork() {
+        if (isStreamed()) {
+            throw new UnsupportedOperationException(
+                    "A streamed World cannot be forked.");
+        }
+        World fork = new World(this);
+        if (player != null) {
+            fork.player = (Player) player.copy();
+            fork.player.setId(player.getId());
+            fork.ownSector(player.getCurrentSector().getId());
+        }
+        return fork;
+    }
+
+    /**
+     * Returns the number of Sectors this World holds its own copy of (every
+     * Sector, unless the World is a fork).
+     *
+     * @return Number of Sectors held.
+     */
+    public int heldSectors() {
+        if (template != null) {
+            return forked.size();
+        }
+        return source != null ? source.heldSectors() : sectors.size();
+    }
+
+    /**
+     * Returns the Sectors this World holds its own copy of, without decoding
+     * or loading any other Sector.
+     *
+     * @return Snapshot of the Sectors held.
+     */
+    public List<Sector> getHeldSectors() {
+        if (template != null) {
+            return new ArrayList<>(forked.values());
+        }
+        return source != null ? source.getHeldSectors()
+                : new ArrayList<>(sectors);
+    }
+
+    /**
+     * Gives an Entity the next numerical Entity ID, so it can be found with
+     * getEntity().
+     *
+     * @param entity Entity to register.
+     */
+    public void registerEntity(Entity entity) {
+        if (isStreamed()) {
+            throw new UnsupportedOperationException(
+                    "Entities cannot be registered with a streamed World.");
+        }
+        entity.setId(entities.size());
+        entities.add(entity);
+        if (store != null) {
+            store.add(entity);
+        }
+    }
+
+    /**
+     * Registers every Entity in the World's Sectors that has no numerical ID
+     * yet (in Sector order). Entities that already have an ID keep it.
+     */
+    public void registerUnnumbered() {
+        for (int id = 0; id < size(); id++) {
+            for (Entity entity : getSector(id).getEntities()) {
+                if (entity.getId() < 0) {
+                    registerEntity(entity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers an Entity under a numerical ID it already has (e.g. one read
+     * from a binary world file). IDs that are skipped are left unused.
+     *
+     * @param entity Entity to register.
+     * @param id Numerical ID of the Entity.
+     */
+    void registerEntity(Entity entity, int id) {
+        entity.setId(id);
+        while (entities.size() <= id) {
+            entities.add(null);
+        }
+        entities.set(id, entity);
+        if (store != null) {
+            store.add(entity);
+        }
+    }
+
+    /**
+     * Reserves the first Entity IDs for Entities that will be registered
+     * under IDs they already have, so registering them does not grow the
+     * table again and again, and registerEntity() hands out IDs after them.
+     *
+     * @param count Number of Entity IDs to reserve.
+     */
+    void reserveEntities(int count) {
+        entities.ensureCapacity(count);
+        while (entities.size() < count) {
+            entities.add(null);
+        }
+    }
+
+    /**
+     * Forgets every registered Entity, so IDs can be handed out again.
+     */
+    public void clearEntities() {
+        entities.clear();
+        if (store != null) {
+            store.clear();
+        }
+    }
+
+    /**
+     * Returns a registered Entity by numerical ID.
+     *
+     * @param id Numerical ID of the Entity.
+     * @return Entity with the given ID (null if there is none).
+     */
+    public Entity getEntity(int id) {
+        return source != null ? source.getEntity(id) : registeredEntity(id);
+    }
+
+    /**
+     * Returns a registered Entity by numerical ID, without asking the
+     * SectorSource to decode it.
+     *
+     * @param id Numerical ID of the Entity.
+     * @return Entity with the given ID (null if there is none).
+     */
+    Entity registeredEntity(int id) {
+        return id >= 0 && id < entities.size() ? entities.get(id) : null;
+    }
+
+    /**
+     * Returns the number of Entity IDs registered or reserved so far (some
+     * of them may be unused).
+     *
+     * @return Number of Entity IDs.
+     */
+    int registeredCount() {
+        return entities.size();
+    }
+
+    /**
+     * Records a Sector that changed since the World was last saved.
+     *
+     * @param sector Sector that changed.
+     */
+    void addDirty(Sector sector) {
+        if (!isStreamed()) {
+            dirty.add(sector);
+        }
+    }
+
+    /**
+     * Returns the Sectors that changed since the World was last saved and
+     * marks them as saved.
+     *
+     * @return Changed Sectors.
+     */
+    public List<Sector> takeDirty() {
+        ArrayList<Sector> changed = new ArrayList<>();
+        Sector sector;
+        while ((sector = dirty.poll()) != null) {
+            sector.clearDirty();
+            changed.add(sector);
+        }
+        if (player != null) {
+            player.clearDirty();
+        }
+        return changed;
+    }
+
+    /**
+     * Adds a listener that is told about every change to the World's state.
+     *
+     * @param listener Listener to add.
+     */
+    public void addListener(WorldListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addListener().
+     *
+     * @param listener Listener to remove.
+     */
+    public void removeListener(WorldListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tells the listeners that an Entity moved.
+     *
+     * @param entity Entity that moved.
+     * @param from Sector the Entity left.
+     * @param to Sector the Entity entered.
+     */
+    void fireEntityMoved(Entity entity, Sector from, Sector to) {
+        for (WorldListener listener : listeners) {
+            listener.entityMoved(entity, from, to);
+        }
+    }
+
+    /**
+     * Tells the listeners that the temperature of a Sector changed.
+     *
+     * @param sector Sector whose temperature changed.
+     */
+    void fireTemperatureChanged(Sector sector) {
+        for (WorldListener listener : listeners) {
+            listener.temperatureChanged(sector);
+        }
+    }
+
+    /**
+     * Marks the Sectors whose temperature a Diffusion tick changed as dirty
+     * and tells the listeners about them all at once.
+     *
+     * @param ids Numerical IDs of the Sectors, in ascending order.
+     */
+    void fireTemperaturesChanged(int[] ids) {
+        List<Sector> changed = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Sector sector = getSector(id);
+            sector.markDirty();
+            changed.add(sector);
+        }
+        for (WorldListener listener : listeners) {
+            listener.temperaturesChanged(changed);
+        }
+    }
+
+    /**
+     * Tells the listeners that the respect level of a Player changed.
+     *
+     * @param player Player whose respect changed.
+     */
+    void fireRespectChanged(Player player) {
+        for (WorldListener listener : listeners) {
+            listener.respectChanged(player);
+        }
+    }
+
+    /**
+     * Sets the Player entity of the World.
+     *
+     * @param player Player entity.
+     */
+    public void setPlayer(Player player) {
+        this.player = player;
+    }
+
+    /**
+     * Returns playable entity object.
+     *
+     * @return Player entity.
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Attaches the store that keeps the registered Entities' hot fields in
+     * arrays.
+     *
+     * @param store Entity store of the World.
+     */
+    void setStore(EntityStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns the store that keeps the registered Entities' hot fields in
+     * arrays.
+     *
+     * @return Entity store (null if the World has none).
+     */
+    public EntityStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns whether the World is streamed, i.e. its Sectors may be evicted
+     * from memory and decoded again later.
+     *
+     * @return True if the World is streamed, False otherwise.
+     */
+    public boolean isStreamed() {
+        return source != null && source.evicts();
+    }
+
+    /**
+     * Sets the source that supplies the Sectors of the World on first use.
+     *
+     * @param source Source of the World's Sectors.
+     */
+    void setSource(SectorSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Sets the source of the random numbers used in the World.
+     *
+     * @param random Source of random numbers.
+     */
+    public void setRandom(RandomSource random) {
+        this.random = random;
+    }
+
+    /**
+     * Returns the source of the random numbers used in the World (shared
+     * with its forks).
+     *
+     * @return Source of random numbers.
+     */
+    public RandomSource getRandom() {
+        return random;
+    }
+
+    /**
+     * List of Sectors comprising the game world (indexed by Sector ID; null
+     * if the World is a fork, empty if a SectorSource supplies them).
+     */
+    private final ArrayList<Sector> sectors;
+
+    /**
+     * HashMap reference from Sector names to Sectors (null if the World is a
+     * fork).
+     */
+    private final HashMap<String, Sector> index;
+
+    /**
+     * Neighbor Sector IDs of every Sector (index = Sector ID * 4 + direction).
+     */
+    private int[] neighbors;
+
+    /**
+     * Temperature of every Sector, indexed by Sector ID (null if the World is
+     * a fork).
+     */
+    private volatile float[] temperatures;
+
+    /**
+     * World this World was forked from (null if it is not a fork).
+     */
+    private final World template;
+
+    /**
+     * Sectors the fork has its own copy of, by Sector ID (null if the World
+     * is not a fork).
+     */
+    private final HashMap<Integer, Sector> forked;
+
+    /**
+     * Sectors that changed since the World was last saved.
+     */
+    private final ConcurrentLinkedQueue<Sector> dirty;
+
+    /**
+     * Registered Entities (indexed by Entity ID).
+     */
+    private final ArrayList<Entity> entities;
+
+    /**
+     * Listeners told about every change to the World's state.
+     */
+    private final CopyOnWriteArrayList<WorldListener> listeners;
+
+    /**
+     * Player entity object.
+     */
+    private Player player;
+
+    /**
+     * Source of the random numbers used in the World.
+     */
+    private volatile RandomSource random;
+
+    /**
+     * Store of the registered Entities' hot fields (null for none).
+     */
+    private volatile EntityStore store;
+
+    /**
+     * Source supplying the Sectors on first use (null if every Sector was
+     * added with addSector()).
+     */
+    private SectorSource source;
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.List;
+
+/**
+ * Receives every change made to the state of a World. Listeners are called on
+ * the thread making the change, so they should return quickly.
+ *
+ * @author Daniel Truong
+ */
+public interface WorldListener {
+
+    /**
+     * Called when an Entity moves from one Sector to another (while both
+     * Sectors are still locked), or leaves the World.
+     *
+     * @param entity Entity that moved.
+     * @param from Sector the Entity left.
+     * @param to Sector the Entity entered (null if it left the World).
+     */
+    default void entityMoved(Entity entity, Sector from, Sector to) {
+    }
+
+    /**
+     * Called when the temperature of a Sector changes.
+     *
+     * @param sector Sector whose temperature changed.
+     */
+    default void temperatureChanged(Sector sector) {
+    }
+
+    /**
+     * Called once per Diffusion tick with every Sector whose temperature the
+     * tick changed. Unless overridden, temperatureChanged() is called for each
+     * of them.
+     *
+     * @param sectors Sectors whose temperature changed, in ascending ID order.
+     */
+    default void temperaturesChanged(List<Sector> sectors) {
+        for (Sector sector : sectors) {
+            temperatureChanged(sector);
+        }
+    }
+
+    /**
+     * Called when the respect level of a Player changes.
+     *
+     * @param player Player whose respect changed.
+     */
+    default void respectChanged(Player player) {
+    }
+}
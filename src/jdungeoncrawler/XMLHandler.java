@@ -26,6 +26,7 @@ package jdungeoncrawler;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Processes the XML game data file and creates the game from it.
@@ -38,84 +39,130 @@ public class XMLHandler extends DefaultHandler {
      * XMLHandler class constructor.
      */
     public XMLHandler() {
-        sectorList = new ArrayList();
+        world = new World();
+        pendingLinks = new ArrayList<>();
+        pendingNames = new ArrayList<>();
         sector = null;
+        entityCount = 0;
+        parsing = null;
+        archetypes = new HashMap<>();
+        archetypeNames = new HashMap<>();
+        spawned = new HashMap<>();
+        shared = new HashMap<>();
+        descriptions = new HashMap<>();
     }
 
     /**
-     * Executes the Quicksort algorithm on the Sector ArrayList.
+     * Creates an archetype that Entities declared later in the file can
+     * share their description with.
      *
-     * @param low Left-most index of the Entity ArrayList.
-     * @param high Right-most index of the Entity ArrayList.
+     * @param id Identifier the Entities refer to the archetype by.
+     * @param name Name of the archetype (Entities without a name of their own
+     * are named after it and numbered).
+     * @param description Description shared by the archetype's Entities.
      */
-    private void executeQuickSort(int low, int high) {
-        int qsValues[] = {low, high, low + (high - low) / 2};
-        /*
-        qsValues[0] = Lower-most index
-        qsValues[1] = Highest-most index
-        qsValues[2] = Pivot point
-         */
-        while (qsValues[0] <= qsValues[1]) {
-            while (sectorList.get(qsValues[0]).getName().compareTo(sectorList
-                    .get(qsValues[2]).getName()) < 0) {
-                qsValues[0] += 1;
-            }
-            while (sectorList.get(qsValues[1]).getName().compareTo(sectorList
-                    .get(qsValues[2]).getName()) > 0) {
-                qsValues[1] -= 1;
-            }
-            if (qsValues[0] <= qsValues[1]) {
-                Sector temp = sectorList.get(qsValues[0]);
-                sectorList.set(qsValues[0], sectorList.get(qsValues[1]));
-                sectorList.set(qsValues[1], temp);
-                qsValues[0] += 1;
-                qsValues[1] -= 1;
-            }
-        }
-        if (low < qsValues[1]) {
-            executeQuickSort(low, qsValues[1]);
-        }
-        if (qsValues[0] < high) {
-            executeQuickSort(qsValues[0], high);
+    public void createArchetype(String id, String name, String description) {
+        archetypes.put(id, share(description));
+        archetypeNames.put(id, name);
+    }
+
+    /**
+     * Creates Entity object to be added to the Sector. Entities with the same
+     * description share one Archetype.
+     *
+     * @param qName Type of Entity (Ally, Enemy, Player).
+     * @param name Entity name.
+     * @param description Entity description.
+     * @throws SAXException If the Entity is the Player and the Sector is
+     * full.
+     */
+    public void createEntity(String qName, String name, String description)
+            throws SAXException {
+        addEntity(qName, name, share(description));
+    }
+
+    /**
+     * Returns the Archetype shared by the Entities with a description,
+     * creating it the first time the description is seen.
+     *
+     * @param description Description of the Entities.
+     * @return Shared Archetype.
+     */
+    private Archetype share(String description) {
+        Archetype archetype = shared.get(description);
+        if (archetype == null) {
+            archetype = new Archetype(description);
+            shared.put(description, archetype);
         }
+        return archetype;
     }
 
     /**
-     * Calls upon a sorting algorithm to sort the Sector ArrayList.
+     * Creates an Entity of a declared archetype to be added to the Sector.
+     *
+     * @param qName Type of Entity (Ally, Enemy, Player).
+     * @param name Entity name (null to name it after the archetype, e.g.
+     * "House Fly #3").
+     * @param id Identifier of the archetype.
+     * @throws SAXException If no archetype was declared with the identifier,
+     * or the Entity is the Player and the Sector is full.
      */
-    private void sortSectors() {
-        if (sectorList.size() > 1) {
-            executeQuickSort(0, sectorList.size() - 1);
+    public void createEntityOf(String qName, String name, String id)
+            throws SAXException {
+        Archetype archetype = archetypes.get(id);
+        if (archetype == null) {
+            throw new SAXException("Unknown archetype \"" + id + "\".");
+        }
+        if (name == null) {
+            int number = spawned.getOrDefault(id, 0) + 1;
+            spawned.put(id, number);
+            name = archetypeNames.get(id) + " #" + number;
         }
+        addEntity(qName, name, archetype);
     }
 
     /**
-     * Creates Entity object to be added to the Sector.
+     * Adds an Entity to the current Sector. Entities beyond the Sector's
+     * capacity are left out of the world, except for the Player, which
+     * must have room.
      *
      * @param qName Type of Entity (Ally, Enemy, Player).
      * @param name Entity name.
-     * @param description Entity description.
+     * @param archetype Archetype holding the Entity's description.
+     * @throws SAXException If the Entity is the Player and the Sector is
+     * full.
      */
-    public void createEntity(String qName, String name, String description) {
+    private void addEntity(String qName, String name, Archetype archetype)
+            throws SAXException {
         Entity entity = null;
         switch (qName) {
             case "player":
-                entity = new Player(name, description);
-                setPlayer(entity);
+                entity = new Player(name, archetype);
                 break;
             case "ally":
-                entity = new Ally(name, description);
+                entity = new Ally(name, archetype);
                 break;
             default:
-                entity = new Enemy(name, description);
+                entity = new Enemy(name, archetype);
                 break;
         }
-        sector.addEntity(entity);
-        entity.setCurrentSector(sector);
+        if (sector.addEntity(entity)) {
+            entity.setCurrentSector(sector);
+            entityCount++;
+            if (entity instanceof Player) {
+                setPlayer(entity);
+            }
+        } else if (entity instanceof Player) {
+            throw new SAXException("Sector \"" + sector.getName()
+                    + "\" is too full for the player.");
+        }
     }
 
     /**
-     * Creates the Sector object comprising the game world.
+     * Creates the Sector object comprising the game world. Neighbors that
+     * have already been read are linked right away; neighbors declared later
+     * in the file are recorded and linked once the whole document has been
+     * read.
      *
      * @param name Sector name.
      * @param description Sector description.
@@ -124,20 +171,90 @@ public class XMLHandler extends DefaultHandler {
      */
     public void createSector(String name, String description, String state,
             String[] directions) {
-        sector = new Sector(name, description, sectorState(state));
-        Sector neighbor = null;
+        addSector(name, description, state, directions,
+                Sector.DEFAULT_CAPACITY, OverflowPolicy.REJECT);
+    }
+
+    /**
+     * Creates the Sector object comprising the game world, with its capacity
+     * and overflow policy.
+     *
+     * @param name Sector name.
+     * @param description Sector description.
+     * @param state String representation of Sector's temperature.
+     * @param directions Neighbors of the Sector.
+     * @param capacity String representation of the Sector's capacity (null
+     * for the default capacity).
+     * @param overflow Name of the Sector's overflow policy (reject, queue,
+     * spill; null to reject).
+     * @throws SAXException If the capacity is not a positive whole number.
+     */
+    public void createSector(String name, String description, String state,
+            String[] directions, String capacity, String overflow)
+            throws SAXException {
+        addSector(name, description, state, directions,
+                sectorCapacity(name, capacity),
+                OverflowPolicy.fromName(overflow));
+    }
+
+    /**
+     * Adds a Sector to the World and links it to its neighbors.
+     *
+     * @param name Sector name.
+     * @param description Sector description.
+     * @param state String representation of Sector's temperature.
+     * @param directions Neighbors of the Sector.
+     * @param capacity Maximum number of Entities the Sector can hold.
+     * @param overflow What happens to Entities moving in while the Sector is
+     * full.
+     */
+    private void addSector(String name, String description, String state,
+            String[] directions, int capacity, OverflowPolicy overflow) {
+        String known = descriptions.putIfAbsent(description, description);
+        sector = new Sector(name, known == null ? description : known,
+                sectorState(state), capacity, overflow);
+        world.addSector(sector);
         for (int i = 0; i < directions.length; i++) {
             if (directions[i] != null) {
-                neighbor = findSector(directions[i]);
+                Sector neighbor = world.getSector(directions[i]);
                 if (neighbor != null) {
-                    sector.setNeighbor(i, neighbor);
-                    neighbor.setNeighbor(oppositeDirection(i), sector);
-                    neighbor = null;
+                    linkSectors(sector, i, neighbor);
+                } else {
+                    pendingLinks.add(sector.getId() * 4 + i);
+                    pendingNames.add(directions[i]);
                 }
             }
         }
-        sectorList.add(sector);
-        sortSectors();
+    }
+
+    /**
+     * Links two Sectors together in both directions.
+     *
+     * @param current Sector being linked.
+     * @param direction Numerical representation of the direction (0 = north,
+     * 1 = south, 2 = east, 3 = west).
+     * @param neighbor Sector found at the direction.
+     */
+    private void linkSectors(Sector current, int direction, Sector neighbor) {
+        Direction match = Direction.fromIndex(direction);
+        current.setNeighbor(match, neighbor);
+        neighbor.setNeighbor(match.opposite(), current);
+    }
+
+    /**
+     * Links the neighbors that were referenced before they were declared, in
+     * a single pass over the pending links.
+     */
+    private void linkPendingSectors() {
+        for (int i = 0; i < pendingLinks.size(); i++) {
+            Sector neighbor = world.getSector(pendingNames.get(i));
+            if (neighbor != null) {
+                int link = pendingLinks.get(i);
+                linkSectors(world.getSector(link / 4), link % 4, neighbor);
+            }
+        }
+        pendingLinks.clear();
+        pendingNames.clear();
     }
 
     /**
@@ -147,7 +264,7 @@ public class XMLHandler extends DefaultHandler {
      * @param player Entity object labeled as the player.
      */
     public void setPlayer(Entity player) {
-        this.player = (Player) player;
+        world.setPlayer((Player) player);
     }
 
     /**
@@ -157,11 +274,19 @@ public class XMLHandler extends DefaultHandler {
      * @param localName
      * @param qName
      * @param attr
+     * @throws SAXException If an Entity refers to an unknown archetype, or a
+     * Sector has a capacity that is not a positive whole number.
      */
     @Override
     public void startElement(String uri, String localName, String qName,
-            Attributes attr) {
+            Attributes attr) throws SAXException {
         switch (qName) {
+            case "xml":
+                if (attr.getValue("seed") != null) {
+                    world.setRandom(new RandomSource(
+                            Long.parseLong(attr.getValue("seed"))));
+                }
+                break;
             case "sector":
                 createSector(attr.getValue("name"),
                         attr.getValue("description"),
@@ -169,34 +294,74 @@ public class XMLHandler extends DefaultHandler {
                     attr.getValue("north"),
                     attr.getValue("south"),
                     attr.getValue("east"),
-                    attr.getValue("west")});
+                    attr.getValue("west")}, attr.getValue("capacity"),
+                        attr.getValue("overflow"));
+                break;
+            case "archetype":
+                createArchetype(attr.getValue("id"), attr.getValue("name"),
+                        attr.getValue("description"));
                 break;
             case "enemy":
             case "ally":
             case "player":
-                createEntity(qName, attr.getValue("name"),
-                        attr.getValue("description"));
+                if (attr.getValue("archetype") != null) {
+                    createEntityOf(qName, attr.getValue("name"),
+                            attr.getValue("archetype"));
+                } else {
+                    createEntity(qName, attr.getValue("name"),
+                            attr.getValue("description"));
+                }
                 break;
 
         }
     }
 
     /**
-     * Returns numerical representation of neighbor direction.
+     * Links the remaining forward references once the XML file has been read,
+     * numbers the Entities in Sector order (the order binary world files use)
+     * and marks the freshly loaded World as saved.
+     */
+    @Override
+    public void endDocument() {
+        endPhase(parsing, "parse");
+        LoadPhaseEvent linking = new LoadPhaseEvent();
+        linking.begin();
+        linkPendingSectors();
+        endPhase(linking, "link");
+        LoadPhaseEvent registering = new LoadPhaseEvent();
+        registering.begin();
+        world.clearEntities();
+        for (int id = 0; id < world.size(); id++) {
+            for (Entity entity : world.getSector(id).getEntities()) {
+                world.registerEntity(entity);
+            }
+        }
+        world.takeDirty();
+        endPhase(registering, "register");
+    }
+
+    /**
+     * Starts timing the parse phase of the load for Flight Recorder.
+     */
+    @Override
+    public void startDocument() {
+        parsing = new LoadPhaseEvent();
+        parsing.begin();
+    }
+
+    /**
+     * Ends a phase of the load and records it for Flight Recorder (if a
+     * recording wants it).
      *
-     * @param direction Numerical representation of direction.
-     * @return Integer that corresponds to opposite direction.
+     * @param event Event begun when the phase started (null if none was).
+     * @param phase Name of the phase.
      */
-    private int oppositeDirection(int direction) {
-        switch (direction) {
-            case 0:
-                return 1;
-            case 1:
-                return 0;
-            case 2:
-                return 3;
-            default:
-                return 2;
+    private void endPhase(LoadPhaseEvent event, String phase) {
+        if (event != null && event.shouldCommit()) {
+            event.phase = phase;
+            event.sectors = world.size();
+            event.entities = entityCount;
+            event.commit();
         }
     }
 
@@ -222,20 +387,30 @@ public class XMLHandler extends DefaultHandler {
     }
 
     /**
-     * Finds (via linear search algorithm) and returns a Sector from string
-     * query.
+     * Converts the string representation of a Sector's capacity to a number.
      *
-     * @param name String query of Sector name.
-     * @return Sector that is found (null if not).
+     * @param name Sector name (for the error message).
+     * @param capacity String representation of the capacity (null for the
+     * default capacity).
+     * @return Maximum number of Entities the Sector can hold.
+     * @throws SAXException If the capacity is not a positive whole number.
      */
-    private Sector findSector(String name) {
-        Sector match = null;
-        for (int i = 0; i < sectorList.size(); i++) {
-            if (sectorList.get(i).getName().equals(name)) {
-                match = sectorList.get(i);
-            }
+    private int sectorCapacity(String name, String capacity)
+            throws SAXException {
+        if (capacity == null) {
+            return Sector.DEFAULT_CAPACITY;
+        }
+        int room;
+        try {
+            room = Integer.parseInt(capacity.trim());
+        } catch (NumberFormatException nfe) {
+            room = 0;
         }
-        return match;
+        if (room <= 0) {
+            throw new SAXException("Sector \"" + name + "\" has capacity \""
+                    + capacity + "\", which is not a positive whole number.");
+        }
+        return room;
     }
 
     /**
@@ -244,22 +419,72 @@ public class XMLHandler extends DefaultHandler {
      * @return Player entity.
      */
     public Player getPlayer() {
-        return player;
+        return world.getPlayer();
     }
 
     /**
-     * List of Sectors comprising the game world.
+     * Returns the World created from the XML file.
+     *
+     * @return Game world.
      */
-    private final ArrayList<Sector> sectorList;
+    public World getWorld() {
+        return world;
+    }
 
     /**
-     * Player entity object.
+     * World holding the Sectors created from the XML file.
      */
-    private Player player;
+    private final World world;
 
     /**
-     * The current Sector being created and having neighbors added to it.
+     * Links waiting for a Sector declared later in the file (Sector ID * 4 +
+     * direction).
+     */
+    private final ArrayList<Integer> pendingLinks;
+
+    /**
+     * Names of the Sectors each pending link is waiting for.
+     */
+    private final ArrayList<String> pendingNames;
+
+    /**
+     * The current Sector being created and having Entities added to it.
      */
     private Sector sector;
 
+    /**
+     * Number of Entities added to the World so far.
+     */
+    private int entityCount;
+
+    /**
+     * Flight Recorder event timing the parse phase of the load.
+     */
+    private LoadPhaseEvent parsing;
+
+    /**
+     * Archetypes declared in the file, by identifier.
+     */
+    private final HashMap<String, Archetype> archetypes;
+
+    /**
+     * Names of the archetypes declared in the file, by identifier.
+     */
+    private final HashMap<String, String> archetypeNames;
+
+    /**
+     * Number of Entities named after each declared archetype so far.
+     */
+    private final HashMap<String, Integer> spawned;
+
+    /**
+     * Archetypes shared by Entities declared with the same description.
+     */
+    private final HashMap<String, Archetype> shared;
+
+    /**
+     * Sector descriptions read so far, so repeated ones are kept once.
+     */
+    private final HashMap<String, String> descriptions;
+
 }
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.File;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests of reading and streaming binary world files.
+ *
+ * @author Daniel Truong
+ */
+public class BinaryWorldTest {
+
+    /**
+     * Plays the same commands on a binary world file read whole and streamed
+     * with only two regions in memory, and checks that the games stay the
+     * same although the streamed World keeps evicting the regions it leaves
+     * and reading them back.
+     *
+     * @throws Exception If the world file cannot be written or read.
+     */
+    @Test
+    public void streamedWorldPlaysLikeReadWorld() throws Exception {
+        File file = File.createTempFile("world", ".dat");
+        try {
+            new BinaryWorld().write(grid(40), file.getPath());
+            World read = new BinaryWorld().read(file.getPath());
+            World streamed = new BinaryWorld().stream(file.getPath(), 2);
+            Random random = new Random(1);
+            StringBuilder expected = new StringBuilder();
+            StringBuilder actual = new StringBuilder();
+            for (int i = 0; i < 5000; i++) {
+                String command = COMMANDS[random.nextInt(COMMANDS.length)];
+                expected.setLength(0);
+                actual.setLength(0);
+                read.getPlayer().execute(command, expected);
+                streamed.getPlayer().execute(command, actual);
+                assertEquals(expected.toString(), actual.toString());
+                assertTrue(streamed.heldSectors() <= 2 * 256);
+            }
+            assertEquals(read.getPlayer().getRespect(),
+                    streamed.getPlayer().getRespect());
+            for (int id = 0; id < read.size(); id++) {
+                assertEquals(read.getSector(id).getState(),
+                        streamed.getSector(id).getState());
+                assertEquals(read.getSector(id).getEntities().toString(),
+                        streamed.getSector(id).getEntities().toString());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Builds a square grid world with a seeded source of random numbers, an
+     * Ally and an Enemy in every Sector, and the Player in the middle.
+     *
+     * @param side Number of Sectors along each side.
+     * @return Grid world.
+     */
+    private static World grid(int side) {
+        World world = new World();
+        world.setRandom(new RandomSource(7));
+        for (int id = 0; id < side * side; id++) {
+            world.addSector(new Sector("Room " + id, "A room.", id % 4));
+        }
+        for (int id = 0; id < side * side; id++) {
+            Sector sector = world.getSector(id);
+            if (id % side < side - 1) {
+                sector.setNeighbor(Direction.EAST, world.getSector(id + 1));
+                world.getSector(id + 1).setNeighbor(Direction.WEST, sector);
+            }
+            if (id / side < side - 1) {
+                sector.setNeighbor(Direction.SOUTH,
+                        world.getSector(id + side));
+                world.getSector(id + side).setNeighbor(Direction.NORTH,
+                        sector);
+            }
+            for (int i = 0; i < 2; i++) {
+                Entity entity = i == 0 ? new Ally("Ally " + id, "An ally.")
+                        : new Enemy("Enemy " + id, "An enemy.");
+                sector.addEntity(entity);
+                entity.setCurrentSector(sector);
+            }
+        }
+        Player player = new Player("Bill", "The player.");
+        Sector start = world.getSector(side * side / 2 + side / 2);
+        start.addEntity(player);
+        player.setCurrentSector(start);
+        world.setPlayer(player);
+        world.registerUnnumbered();
+        return world;
+    }
+
+    /**
+     * Commands played on both Worlds.
+     */
+    private static final String[] COMMANDS = {"north", "south", "east",
+        "west", "heat", "cool", "look"};
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests of the EntityStore's scans over Worlds whose Entity IDs have gaps.
+ *
+ * @author Daniel Truong
+ */
+public class EntityStoreTest {
+
+    /**
+     * Stores a World whose Entities were registered under IDs with gaps, and
+     * checks that the unused IDs are never selected (as Players or
+     * otherwise), before and after the store grows and after it is cleared.
+     */
+    @Test
+    public void unusedIdsAreNeverSelected() {
+        World world = new World();
+        world.setRandom(new RandomSource(7));
+        world.addSector(new Sector("Room 0", "A room.", 0));
+        world.addSector(new Sector("Room 1", "A room.", 0));
+        world.getSector(0).setNeighbor(Direction.EAST, world.getSector(1));
+        world.getSector(1).setNeighbor(Direction.WEST, world.getSector(0));
+        Player player = new Player("Bill", "The player.");
+        add(world, player, 0, 3);
+        world.setPlayer(player);
+        add(world, new Enemy("Enemy", "An enemy."), 0, 1);
+        add(world, new Ally("Ally", "An ally."), 1, 7);
+
+        EntityStore store = new EntityStore(world);
+        assertEquals(8, store.size());
+        assertEquals(EntityStore.NONE, store.getType(0));
+        assertEquals(-1, store.getSector(0));
+        assertEquals(1, store.count(EntityStore.PLAYER));
+        assertArrayEquals(new int[] {3},
+                store.select(EntityStore.PLAYER, 0));
+        assertEquals(1, store.attemptMoves(EntityStore.PLAYER, 0));
+
+        add(world, new Enemy("Far enemy", "An enemy."), 1, 40);
+        assertEquals(EntityStore.NONE, store.getType(20));
+        assertEquals(-1, store.getSector(20));
+        assertArrayEquals(new int[] {1, 40},
+                store.select(EntityStore.ENEMY, 0));
+        assertEquals(1, store.count(EntityStore.PLAYER));
+
+        world.clearEntities();
+        world.registerEntity(player);
+        assertEquals(1, store.size());
+        assertEquals(0, store.count(EntityStore.ENEMY));
+        assertArrayEquals(new int[] {0},
+                store.select(EntityStore.PLAYER, 0));
+        add(world, new Ally("Late ally", "An ally."), 0, 5);
+        assertEquals(EntityStore.NONE, store.getType(3));
+        assertEquals(1, store.count(EntityStore.PLAYER));
+        assertEquals(1, store.count(EntityStore.ALLY));
+    }
+
+    /**
+     * Puts an Entity in a Sector and registers it under an ID.
+     *
+     * @param world World of the Sector.
+     * @param entity Entity to add.
+     * @param sector Numerical ID of the Sector.
+     * @param id Numerical ID of the Entity.
+     */
+    private static void add(World world, Entity entity, int sector, int id) {
+        world.getSector(sector).addEntity(entity);
+        entity.setCurrentSector(world.getSector(sector));
+        world.registerEntity(entity, id);
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests of the Entities' reactions to a Sector being heated or cooled while
+ * other Entities leave it, and of Entities leaving the World.
+ *
+ * @author Daniel Truong
+ */
+public class EntityTest {
+
+    /**
+     * Heats a room whose Enemies all leave it, and checks that every Entity
+     * listed when the room was heated reacts exactly once, although the list
+     * of the room shrinks with every move.
+     */
+    @Test
+    public void everyEntityReactsOnceWhileOthersLeave() {
+        World world = rooms(10);
+        Sector room = world.getSector(0);
+        List<Recorder> enemies = new ArrayList<>();
+        List<Recorder> allies = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            enemies.add(add(new Enemy("Enemy " + i, "An enemy."), room, 1));
+            allies.add(add(new Ally("Ally " + i, "An ally."), room, 1));
+        }
+        world.getPlayer().execute("heat");
+        for (Recorder enemy : enemies) {
+            assertEquals(1, enemy.calls);
+        }
+        for (Recorder ally : allies) {
+            assertEquals(0, ally.calls);
+        }
+        assertEquals(5, room.entityCount());
+        assertEquals(4, world.getSector(1).entityCount());
+    }
+
+    /**
+     * Cools a room of Allies and Enemies and checks that the Player's respect
+     * changes once, by the sum of every Entity's reaction, although the
+     * Allies leave the room.
+     */
+    @Test
+    public void respectChangesOnceBySummedReactions() {
+        World world = rooms(10);
+        Sector room = world.getSector(0);
+        for (int i = 0; i < 3; i++) {
+            add(new Ally("Ally " + i, "An ally."), room, 1);
+        }
+        for (int i = 0; i < 5; i++) {
+            add(new Enemy("Enemy " + i, "An enemy."), room, 1);
+        }
+        final List<Integer> changes = new ArrayList<>();
+        world.addListener(new WorldListener() {
+            @Override
+            public void respectChanged(Player player) {
+                changes.add(player.getRespect());
+            }
+        });
+        Player player = world.getPlayer();
+        int before = player.getRespect();
+        player.execute("cool");
+        assertEquals(1, changes.size());
+        assertEquals(before + 5 - 3, player.getRespect());
+        assertEquals(6, room.entityCount());
+    }
+
+    /**
+     * Heats a room whose Enemies all head for a room with space for only two
+     * of them, while the first Enemy to move pushes another one out, and
+     * checks that the Enemies move in name order (whatever order they arrived
+     * in) and that the one pushed out does not move again.
+     */
+    @Test
+    public void disturbedEntitiesMoveInNameOrderIfStillThere() {
+        World world = rooms(2);
+        Sector room = world.getSector(0);
+        Recorder d = add(new Enemy("Enemy D", "An enemy."), room, 1);
+        Recorder a = add(new Enemy("Enemy A", "An enemy."), room, 1);
+        Recorder c = add(new Enemy("Enemy C", "An enemy."), room, 1);
+        Recorder b = add(new Enemy("Enemy B", "An enemy."), room, 1);
+        a.push = b.entity;
+        a.pushTo = world.getSector(2);
+        world.getPlayer().execute("heat");
+        assertEquals(1, a.calls);
+        assertEquals(0, b.calls);
+        assertEquals(1, c.calls);
+        assertEquals(1, d.calls);
+        assertSame(world.getSector(1), a.entity.getCurrentSector());
+        assertSame(world.getSector(2), b.entity.getCurrentSector());
+        assertSame(world.getSector(1), c.entity.getCurrentSector());
+        assertSame(room, d.entity.getCurrentSector());
+    }
+
+    /**
+     * Takes an Entity out of a full room that another Entity is queued for,
+     * while it is itself queued for that Entity's room, and checks that the
+     * listeners are told, the queued Entity is let in, and the Entity that
+     * left waits for nothing any more.
+     */
+    @Test
+    public void leavingLetsQueuedEntitiesIn() {
+        World world = new World();
+        world.addSector(new Sector("Room 0", "A room.", 2, 1,
+                OverflowPolicy.QUEUE));
+        world.addSector(new Sector("Room 1", "A room.", 2, 1,
+                OverflowPolicy.QUEUE));
+        Sector first = world.getSector(0);
+        Sector second = world.getSector(1);
+        first.setNeighbor(Direction.EAST, second);
+        second.setNeighbor(Direction.WEST, first);
+        Entity leaving = add(new Enemy("Enemy A", "An enemy."), first, 1)
+                .entity;
+        Entity waiting = add(new Enemy("Enemy B", "An enemy."), second, 0)
+                .entity;
+        assertFalse(waiting.move(first));
+        assertFalse(leaving.move(second));
+        final List<String> moves = new ArrayList<>();
+        world.addListener(new WorldListener() {
+            @Override
+            public void entityMoved(Entity entity, Sector from, Sector to) {
+                moves.add(entity.getName() + " " + from.getName() + " "
+                        + (to == null ? "out" : to.getName()));
+            }
+        });
+        leaving.leave();
+        assertNull(leaving.getCurrentSector());
+        assertSame(first, waiting.getCurrentSector());
+        assertEquals(0, second.entityCount());
+        assertNull(second.pollWaiting());
+        assertEquals(Arrays.asList("Enemy A Room 0 out",
+                "Enemy B Room 1 Room 0"), moves);
+    }
+
+    /**
+     * Sends the Player into a full room with the QUEUE policy and checks that
+     * it is told the room is full and stays where it is, even once the room
+     * has space again.
+     */
+    @Test
+    public void playerIsNotQueuedForFullRoom() {
+        World world = new World();
+        world.addSector(new Sector("Room 0", "A room.", 2, 2,
+                OverflowPolicy.QUEUE));
+        world.addSector(new Sector("Room 1", "A room.", 2, 1,
+                OverflowPolicy.QUEUE));
+        Sector first = world.getSector(0);
+        Sector second = world.getSector(1);
+        first.setNeighbor(Direction.EAST, second);
+        second.setNeighbor(Direction.WEST, first);
+        Player player = new Player("Bill", "The player.");
+        first.addEntity(player);
+        player.setCurrentSector(first);
+        world.setPlayer(player);
+        Entity enemy = add(new Enemy("Enemy", "An enemy."), second, 0).entity;
+        StringBuilder out = new StringBuilder();
+        player.execute("east", out);
+        assertEquals("Room is full", out.toString());
+        assertNull(second.pollWaiting());
+        assertTrue(enemy.move(first));
+        assertSame(first, player.getCurrentSector());
+        assertEquals(0, second.entityCount());
+    }
+
+    /**
+     * Builds a World of three rooms: the Player's room, a room the reacting
+     * Entities head for, and a spare room.
+     *
+     * @param capacity Number of Entities the second room has space for.
+     * @return World with the Player in the first room.
+     */
+    private static World rooms(int capacity) {
+        World world = new World();
+        world.setRandom(new RandomSource(7));
+        world.addSector(new Sector("Room 0", "The Player's room.", 2, 20,
+                OverflowPolicy.REJECT));
+        world.addSector(new Sector("Room 1", "The room to flee to.", 2,
+                capacity, OverflowPolicy.REJECT));
+        world.addSector(new Sector("Room 2", "A spare room.", 2, 20,
+                OverflowPolicy.REJECT));
+        Player player = new Player("Bill", "The player.");
+        world.getSector(0).addEntity(player);
+        player.setCurrentSector(world.getSector(0));
+        world.setPlayer(player);
+        return world;
+    }
+
+    /**
+     * Adds an Entity to a Sector with a Behavior that records its decisions.
+     *
+     * @param entity Entity to add.
+     * @param sector Sector to add it to.
+     * @param target Numerical ID of the Sector the Entity moves to.
+     * @return Behavior of the Entity.
+     */
+    private static Recorder add(Entity entity, Sector sector, int target) {
+        sector.addEntity(entity);
+        entity.setCurrentSector(sector);
+        Recorder recorder = new Recorder(entity, target);
+        entity.setBehavior(recorder);
+        return recorder;
+    }
+
+    /**
+     * Behavior that always moves to the same Sector, counts how often it is
+     * asked, and may push another Entity out of the Sector first.
+     */
+    private static class Recorder implements Behavior {
+
+        /**
+         * Recorder class constructor.
+         *
+         * @param entity Entity the Behavior belongs to.
+         * @param target Numerical ID of the Sector to move to.
+         */
+        Recorder(Entity entity, int target) {
+            this.entity = entity;
+            this.target = target;
+            calls = 0;
+            push = null;
+            pushTo = null;
+        }
+
+        @Override
+        public int decide(World world, int sector, int roll) {
+            calls++;
+            if (push != null) {
+                push.move(pushTo);
+            }
+            return target;
+        }
+
+        /**
+         * Entity the Behavior belongs to.
+         */
+        final Entity entity;
+
+        /**
+         * Numerical ID of the Sector to move to.
+         */
+        final int target;
+
+        /**
+         * Number of times the Behavior decided.
+         */
+        int calls;
+
+        /**
+         * Entity pushed out of the Sector before deciding (null for none).
+         */
+        Entity push;
+
+        /**
+         * Sector the pushed Entity is moved to.
+         */
+        Sector pushTo;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.parsers.SAXParserFactory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests that the game's Flight Recorder events reach a recording.
+ *
+ * @author Daniel Truong
+ */
+public class FlightRecorderTest {
+
+    /**
+     * Loads a world file and carries out a move and a heat command while a
+     * recording is running, then checks the recording holds the load phases,
+     * the commands, the move and the reaction cascade with their sector names
+     * and entity counts.
+     *
+     * @throws Exception If the world cannot be loaded or the recording
+     * cannot be written or read.
+     */
+    @Test
+    public void eventsAreRecorded() throws Exception {
+        File file = File.createTempFile("events", ".jfr");
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"jdungeoncrawler.Command",
+                "jdungeoncrawler.Move", "jdungeoncrawler.Reaction",
+                "jdungeoncrawler.LoadPhase"}) {
+                recording.enable(name).withThreshold(Duration.ZERO)
+                        .withoutStackTrace();
+            }
+            recording.start();
+            XMLHandler handler = new XMLHandler();
+            SAXParserFactory.newInstance().newSAXParser().parse(
+                    new ByteArrayInputStream(WORLD.getBytes(
+                            StandardCharsets.UTF_8)), handler);
+            Player player = handler.getPlayer();
+            player.execute("east");
+            player.execute("heat");
+            recording.stop();
+            recording.dump(file.toPath());
+            events = RecordingFile.readAllEvents(file.toPath());
+        } finally {
+            file.delete();
+        }
+
+        List<String> phases = new ArrayList<>();
+        RecordedEvent move = null;
+        RecordedEvent reaction = null;
+        List<String> commands = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            switch (event.getEventType().getName()) {
+                case "jdungeoncrawler.LoadPhase":
+                    phases.add(event.getString("phase"));
+                    assertEquals(2, event.getInt("sectors"));
+                    assertEquals(3, event.getInt("entities"));
+                    break;
+                case "jdungeoncrawler.Command":
+                    commands.add(event.getString("command"));
+                    assertEquals("Study", event.getString("sector"));
+                    assertEquals(2, event.getInt("entities"));
+                    break;
+                case "jdungeoncrawler.Move":
+                    move = event;
+                    break;
+                case "jdungeoncrawler.Reaction":
+                    reaction = event;
+                    break;
+                default:
+                    break;
+            }
+        }
+        assertTrue(phases.toString(), phases.contains("parse")
+                && phases.contains("link") && phases.contains("register"));
+        assertTrue(commands.toString(), commands.contains("east")
+                && commands.contains("heat"));
+        assertTrue("No move event", move != null);
+        assertEquals("Hall", move.getString("from"));
+        assertEquals("Study", move.getString("to"));
+        assertEquals("Bill", move.getString("entity"));
+        assertTrue("No reaction event", reaction != null);
+        assertEquals("Study", reaction.getString("sector"));
+        assertTrue(reaction.getBoolean("heated"));
+        assertEquals(2, reaction.getInt("entities"));
+        assertEquals(1, reaction.getInt("respect"));
+    }
+
+    /**
+     * World file with two Sectors: the Player starts in the Hall, next to
+     * the Study where an Ally waits.
+     */
+    private static final String WORLD = "<xml>"
+            + "<sector name=\"Hall\" description=\"a hall\" state=\"cool\""
+            + " east=\"Study\"><player name=\"Bill\" description=\"you\" />"
+            + "<enemy name=\"Rat\" description=\"a rat\" /></sector>"
+            + "<sector name=\"Study\" description=\"a study\" state=\"cool\""
+            + " west=\"Hall\"><ally name=\"Ann\" description=\"a friend\" />"
+            + "</sector></xml>";
+}
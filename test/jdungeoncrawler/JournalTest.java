@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests of journaling the changes made to a World and recovering it.
+ *
+ * @author Daniel Truong
+ */
+public class JournalTest {
+
+    /**
+     * Journals moves, an Entity leaving the World, temperature changes (one
+     * at a time and by a Diffusion tick) and respect changes, and checks that
+     * the World recovered from the snapshot and the journal matches the
+     * journaled World.
+     *
+     * @throws Exception If the files cannot be written or read.
+     */
+    @Test
+    public void recoveredWorldMatchesJournaledWorld() throws Exception {
+        File directory = directory();
+        try {
+            World world = grid(8);
+            Journal journal = new Journal(world, directory.getPath(), 5);
+            Entity leaving = world.getSector(3).getEntities().get(0);
+            world.getSector(10).getEntities().get(0)
+                    .move(world.getSector(11));
+            world.getSector(20).getEntities().get(1)
+                    .move(world.getSector(28));
+            leaving.leave();
+            world.getSector(0).increaseTemp();
+            world.getPlayer().execute("heat");
+            world.getPlayer().changeRespect(3);
+            Diffusion diffusion = new Diffusion(world, 0.2f, 0.01f, 1.5f, 1);
+            try {
+                diffusion.tick();
+            } finally {
+                diffusion.shutdown();
+            }
+            journal.close();
+
+            World recovered = Journal.recover(directory.getPath());
+            SaveFileTest.assertSameState(world, recovered);
+            assertEquals(world.getPlayer().getRespect(),
+                    recovered.getPlayer().getRespect());
+            assertNull(recovered.getEntity(leaving.getId())
+                    .getCurrentSector());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Appends a record of an unknown type to a journal and checks that
+     * recovering from it fails instead of guessing what it means.
+     *
+     * @throws Exception If the files cannot be written or read.
+     */
+    @Test
+    public void unknownRecordTypeIsRejected() throws Exception {
+        File directory = directory();
+        try {
+            World world = grid(4);
+            Journal journal = new Journal(world, directory.getPath(), 5);
+            world.getPlayer().changeRespect(1);
+            journal.close();
+            File log = new File(directory, Journal.JOURNAL);
+            try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+                file.seek(file.length());
+                file.writeByte(9);
+                file.writeInt(world.getPlayer().getId());
+                file.writeInt(5);
+            }
+            try {
+                Journal.recover(directory.getPath());
+                fail("A journal with an unknown record type was replayed.");
+            } catch (IOException expected) {
+                // The record is neither a move nor a temperature or respect
+                // change.
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Creates an empty directory for the snapshot and journal files.
+     *
+     * @return Directory created.
+     * @throws IOException If the directory cannot be created.
+     */
+    private static File directory() throws IOException {
+        File directory = File.createTempFile("journal", "");
+        directory.delete();
+        directory.mkdir();
+        return directory;
+    }
+
+    /**
+     * Deletes a directory and the files in it.
+     *
+     * @param directory Directory to delete.
+     */
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Builds a square grid world with an Ally and an Enemy in every Sector,
+     * and the Player in the middle.
+     *
+     * @param side Number of Sectors along each side.
+     * @return Grid world.
+     */
+    private static World grid(int side) {
+        World world = new World();
+        world.setRandom(new RandomSource(7));
+        for (int id = 0; id < side * side; id++) {
+            world.addSector(new Sector("Room " + id, "A room.", id % 4));
+        }
+        for (int id = 0; id < side * side; id++) {
+            Sector sector = world.getSector(id);
+            if (id % side < side - 1) {
+                sector.setNeighbor(Direction.EAST, world.getSector(id + 1));
+                world.getSector(id + 1).setNeighbor(Direction.WEST, sector);
+            }
+            if (id / side < side - 1) {
+                sector.setNeighbor(Direction.SOUTH,
+                        world.getSector(id + side));
+                world.getSector(id + side).setNeighbor(Direction.NORTH,
+                        sector);
+            }
+            for (int i = 0; i < 2; i++) {
+                Entity entity = i == 0 ? new Ally("Ally " + id, "An ally.")
+                        : new Enemy("Enemy " + id, "An enemy.");
+                sector.addEntity(entity);
+                entity.setCurrentSector(sector);
+            }
+        }
+        Player player = new Player("Bill", "The player.");
+        Sector start = world.getSector(side * side / 2 + side / 2);
+        start.addEntity(player);
+        player.setCurrentSector(start);
+        world.setPlayer(player);
+        return world;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests of saving the changes made to a World to a paged save file and
+ * loading them back.
+ *
+ * @author Daniel Truong
+ */
+public class SaveFileTest {
+
+    /**
+     * Saves a heated Sector, a move and the Player's respect, and checks that
+     * loading them into a freshly read World reproduces the played World,
+     * and that opening the save file decodes no Sectors.
+     *
+     * @throws Exception If the files cannot be written or read.
+     */
+    @Test
+    public void savedChangesLoadIntoFreshWorld() throws Exception {
+        File world = File.createTempFile("world", ".dat");
+        File save = File.createTempFile("world", ".sav");
+        save.delete();
+        try {
+            new BinaryWorld().write(grid(10), world.getPath());
+            World played = new BinaryWorld().read(world.getPath());
+            played.getSector(0).increaseTemp();
+            played.getSector(10).getEntities().get(0)
+                    .move(played.getSector(11));
+            played.getPlayer().setRespect(42);
+            SaveFile saveFile = new SaveFile(save.getPath(), played);
+            assertEquals(3, saveFile.save());
+            assertEquals(0, saveFile.save());
+            saveFile.close();
+
+            World loaded = new BinaryWorld().read(world.getPath());
+            int held = loaded.heldSectors();
+            saveFile = new SaveFile(save.getPath(), loaded);
+            assertEquals(held, loaded.heldSectors());
+            try {
+                assertEquals(3, saveFile.load());
+            } finally {
+                saveFile.close();
+            }
+            assertSameState(played, loaded);
+            assertEquals(42, loaded.getPlayer().getRespect());
+        } finally {
+            world.delete();
+            save.delete();
+        }
+    }
+
+    /**
+     * Checks that a save file written for a World of another size is
+     * rejected when it is opened.
+     *
+     * @throws Exception If the files cannot be written or read.
+     */
+    @Test
+    public void fileOfAnotherWorldIsRejected() throws Exception {
+        File save = File.createTempFile("world", ".sav");
+        save.delete();
+        try {
+            new SaveFile(save.getPath(), grid(10)).close();
+            try {
+                new SaveFile(save.getPath(), grid(5)).close();
+                fail("A save file of another world was opened.");
+            } catch (IOException expected) {
+                // The file belongs to a World of 100 Sectors.
+            }
+        } finally {
+            save.delete();
+        }
+    }
+
+    /**
+     * Checks that a streamed World, which does not record the Sectors that
+     * changed, cannot be given a save file.
+     *
+     * @throws Exception If the files cannot be written or read.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void streamedWorldIsRejected() throws Exception {
+        File world = File.createTempFile("world", ".dat");
+        File save = File.createTempFile("world", ".sav");
+        save.delete();
+        try {
+            new BinaryWorld().write(grid(10), world.getPath());
+            World streamed = new BinaryWorld().stream(world.getPath(), 2);
+            new SaveFile(save.getPath(), streamed).close();
+        } finally {
+            world.delete();
+            save.delete();
+        }
+    }
+
+    /**
+     * Saves a heated Sector and a move, names an unknown Entity in the page
+     * of the Sector moved into, and checks that loading the file fails and
+     * leaves the World as it was loaded (the heated Sector's page comes
+     * first, but is not applied either).
+     *
+     * @throws Exception If the files cannot be written or read.
+     */
+    @Test
+    public void rejectedFileLeavesWorldUnchanged() throws Exception {
+        File world = File.createTempFile("world", ".dat");
+        File save = File.createTempFile("world", ".sav");
+        save.delete();
+        try {
+            new BinaryWorld().write(grid(10), world.getPath());
+            World played = new BinaryWorld().read(world.getPath());
+            played.getSector(0).increaseTemp();
+            played.getSector(10).getEntities().get(0)
+                    .move(played.getSector(11));
+            SaveFile saveFile = new SaveFile(save.getPath(), played);
+            saveFile.save();
+            long page = saveFile.pageOffset(11);
+            saveFile.close();
+            try (RandomAccessFile file = new RandomAccessFile(save, "rw")) {
+                file.seek(page + 8);
+                file.writeInt(999999);
+            }
+
+            World loaded = new BinaryWorld().read(world.getPath());
+            saveFile = new SaveFile(save.getPath(), loaded);
+            try {
+                saveFile.load();
+                fail("A save file naming an unknown entity was loaded.");
+            } catch (IOException expected) {
+                World fresh = new BinaryWorld().read(world.getPath());
+                assertSameState(fresh, loaded);
+            } finally {
+                saveFile.close();
+            }
+        } finally {
+            world.delete();
+            save.delete();
+        }
+    }
+
+    /**
+     * Checks that two Worlds have the same temperatures and Entities in every
+     * Sector.
+     *
+     * @param expected World with the expected state.
+     * @param actual World to check.
+     */
+    static void assertSameState(World expected, World actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int id = 0; id < expected.size(); id++) {
+            assertEquals(expected.getSector(id).getState(),
+                    actual.getSector(id).getState());
+            assertEquals(expected.getSector(id).getEntities().toString(),
+                    actual.getSector(id).getEntities().toString());
+        }
+    }
+
+    /**
+     * Builds a square grid world with an Ally and an Enemy in every Sector,
+     * and the Player in the middle.
+     *
+     * @param side Number of Sectors along each side.
+     * @return Grid world.
+     */
+    private static World grid(int side) {
+        World world = new World();
+        world.setRandom(new RandomSource(7));
+        for (int id = 0; id < side * side; id++) {
+            world.addSector(new Sector("Room " + id, "A room.", id % 4));
+        }
+        for (int id = 0; id < side * side; id++) {
+            Sector sector = world.getSector(id);
+            if (id % side < side - 1) {
+                sector.setNeighbor(Direction.EAST, world.getSector(id + 1));
+                world.getSector(id + 1).setNeighbor(Direction.WEST, sector);
+            }
+            if (id / side < side - 1) {
+                sector.setNeighbor(Direction.SOUTH,
+                        world.getSector(id + side));
+                world.getSector(id + side).setNeighbor(Direction.NORTH,
+                        sector);
+            }
+            for (int i = 0; i < 2; i++) {
+                Entity entity = i == 0 ? new Ally("Ally " + id, "An ally.")
+                        : new Enemy("Enemy " + id, "An enemy.");
+                sector.addEntity(entity);
+                entity.setCurrentSector(sector);
+            }
+        }
+        Player player = new Player("Bill", "The player.");
+        Sector start = world.getSector(side * side / 2 + side / 2);
+        start.addEntity(player);
+        player.setCurrentSector(start);
+        world.setPlayer(player);
+        world.registerUnnumbered();
+        return world;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests of the Sector's Entity container under concurrent moves.
+ *
+ * @author Daniel Truong
+ */
+public class SectorTest {
+
+    /**
+     * Moves Entities at random between the Sectors of a crowded grid from
+     * many threads at once, with every overflow policy, and checks that no
+     * Entity is lost or duplicated: every Entity is listed exactly once, in
+     * the Sector it points to, and no Sector holds more than its capacity.
+     *
+     * @throws Exception If a moving thread fails.
+     */
+    @Test
+    public void concurrentMovesConserveEntities() throws Exception {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            World world = grid(10, 3, policy);
+            final List<Entity> entities = new ArrayList<>();
+            for (int id = 0; id < world.size(); id++) {
+                entities.addAll(world.getSector(id).getEntities());
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final long seed = t;
+                results.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        Random random = new Random(seed);
+                        for (int i = 0; i < MOVES_PER_THREAD; i++) {
+                            Entity entity = entities.get(
+                                    random.nextInt(entities.size()));
+                            Sector next = entity.getCurrentSector()
+                                    .getNeighbor(Direction.fromIndex(
+                                            random.nextInt(4)));
+                            if (next != null) {
+                                entity.move(next);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+            pool.shutdown();
+
+            IdentityHashMap<Entity, Sector> listed = new IdentityHashMap<>();
+            for (int id = 0; id < world.size(); id++) {
+                Sector sector = world.getSector(id);
+                List<Entity> members = sector.getEntities();
+                assertTrue(policy + ": " + sector + " is over capacity",
+                        members.size() <= sector.getCapacity());
+                for (Entity entity : members) {
+                    assertNull(policy + ": " + entity + " is listed twice",
+                            listed.put(entity, sector));
+                }
+            }
+            assertEquals(policy + ": Entities were lost", entities.size(),
+                    listed.size());
+            for (Entity entity : entities) {
+                assertSame(policy + ": " + entity + " is misplaced",
+                        entity.getCurrentSector(), listed.get(entity));
+            }
+        }
+    }
+
+    /**
+     * Builds a square grid of Sectors with two Entities in each.
+     *
+     * @param side Number of Sectors along each side of the grid.
+     * @param capacity Capacity of every Sector.
+     * @param policy Overflow policy of every Sector.
+     * @return Grid world.
+     */
+    private static World grid(int side, int capacity, OverflowPolicy policy) {
+        World world = new World();
+        for (int id = 0; id < side * side; id++) {
+            world.addSector(new Sector("Room " + id, "A room.", id % 4,
+                    capacity, policy));
+        }
+        for (int id = 0; id < side * side; id++) {
+            Sector sector = world.getSector(id);
+            if (id % side < side - 1) {
+                sector.setNeighbor(Direction.EAST, world.getSector(id + 1));
+                world.getSector(id + 1).setNeighbor(Direction.WEST, sector);
+            }
+            if (id / side < side - 1) {
+                sector.setNeighbor(Direction.SOUTH,
+                        world.getSector(id + side));
+                world.getSector(id + side).setNeighbor(Direction.NORTH,
+                        sector);
+            }
+            for (int i = 0; i < 2; i++) {
+                Entity entity = i == 0 ? new Ally("Ally " + id, "An ally.")
+                        : new Enemy("Enemy " + id, "An enemy.");
+                sector.addEntity(entity);
+                entity.setCurrentSector(sector);
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Number of threads moving Entities at once.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Number of moves made by each thread (per overflow policy).
+     */
+    private static final int MOVES_PER_THREAD = 200000;
+}
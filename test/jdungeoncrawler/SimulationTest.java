@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Tests of the parallel Simulation of a World.
+ *
+ * @author Daniel Truong
+ */
+public class SimulationTest {
+
+    /**
+     * Simulates the same seeded World of crowded Sectors that spill over into
+     * their neighbors twice, with several partitions, and checks that both
+     * runs end with the same Entities in every Sector and that no Entity was
+     * lost or duplicated.
+     */
+    @Test
+    public void spillingIsReproducibleForSameSeed() {
+        List<String> first = simulate();
+        List<String> second = simulate();
+        assertEquals(first, second);
+    }
+
+    /**
+     * Simulates a seeded grid World whose Sectors spill over when full for a
+     * number of ticks, checking that every Entity is in exactly one Sector.
+     *
+     * @return Entities of every Sector after the last tick.
+     */
+    private static List<String> simulate() {
+        World world = grid(16, 3, 2);
+        Simulation simulation = new Simulation(world, 4);
+        try {
+            for (int tick = 0; tick < 50; tick++) {
+                simulation.tick();
+            }
+        } finally {
+            simulation.shutdown();
+        }
+        List<String> contents = new ArrayList<>();
+        int count = 0;
+        for (int id = 0; id < world.size(); id++) {
+            Sector sector = world.getSector(id);
+            for (Entity entity : sector.getEntities()) {
+                assertSame(sector, entity.getCurrentSector());
+                count++;
+            }
+            contents.add(sector.getEntities().toString());
+        }
+        assertEquals(16 * 16 * 2, count);
+        return contents;
+    }
+
+    /**
+     * Builds a square grid World of Sectors that spill over when full, with
+     * Enemies in every Sector.
+     *
+     * @param side Number of Sectors along each side.
+     * @param capacity Number of Entities every Sector has space for.
+     * @param entities Number of Enemies put in every Sector.
+     * @return Grid World.
+     */
+    private static World grid(int side, int capacity, int entities) {
+        World world = new World();
+        world.setRandom(new RandomSource(7));
+        for (int id = 0; id < side * side; id++) {
+            world.addSector(new Sector("Room " + id, "A room.", id % 4,
+                    capacity, OverflowPolicy.SPILL));
+        }
+        for (int id = 0; id < side * side; id++) {
+            Sector sector = world.getSector(id);
+            if (id % side < side - 1) {
+                sector.setNeighbor(Direction.EAST, world.getSector(id + 1));
+                world.getSector(id + 1).setNeighbor(Direction.WEST, sector);
+            }
+            if (id / side < side - 1) {
+                sector.setNeighbor(Direction.SOUTH,
+                        world.getSector(id + side));
+                world.getSector(id + side).setNeighbor(Direction.NORTH,
+                        sector);
+            }
+            for (int i = 0; i < entities; i++) {
+                Entity entity = new Enemy("Enemy " + id + "." + i,
+                        "An enemy.");
+                sector.addEntity(entity);
+                entity.setCurrentSector(sector);
+            }
+        }
+        world.registerUnnumbered();
+        return world;
+    }
+}
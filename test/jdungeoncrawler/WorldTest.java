@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests of copy-on-write forks of a World and of the changes it reports.
+ *
+ * @author Daniel Truong
+ */
+public class WorldTest {
+
+    /**
+     * Looks around a fork and checks that reading the neighboring Sectors
+     * and their temperatures copies nothing, while moving copies the Sector
+     * moved into and leaves the forked World as it was.
+     */
+    @Test
+    public void forksOnlyCopySectorsTheyChange() {
+        World base = grid(10);
+        Sector start = base.getPlayer().getCurrentSector();
+        World fork = base.fork();
+        Player player = fork.getPlayer();
+        player.execute("look");
+        for (Direction direction : Direction.values()) {
+            Sector neighbor = player.getCurrentSector().getNeighbor(direction);
+            fork.getState(neighbor.getId());
+        }
+        assertEquals(1, fork.heldSectors());
+
+        player.execute("east");
+        assertEquals(2, fork.heldSectors());
+        Sector east = player.getCurrentSector();
+        assertNotSame(base.getSector(east.getId()), east);
+        assertEquals(3, east.entityCount());
+        assertEquals(3, start.entityCount());
+        assertEquals(2, base.getSector(east.getId()).entityCount());
+    }
+
+    /**
+     * Holds 10,000 forks of a World at once, each of which has looked
+     * around, moved and heated a Sector, and checks that together they stay
+     * within a fixed amount of heap and leave the forked World unchanged.
+     */
+    @Test
+    public void tenThousandSessionsFitInFixedHeap() {
+        World base = grid(100);
+        int[] states = new int[base.size()];
+        int[] counts = new int[base.size()];
+        for (int id = 0; id < base.size(); id++) {
+            states[id] = base.getState(id);
+            counts[id] = base.getSector(id).entityCount();
+        }
+        long before = usedHeap();
+        List<World> sessions = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            World fork = base.fork();
+            fork.getPlayer().execute("look");
+            fork.getPlayer().execute("east");
+            fork.getPlayer().execute("heat");
+            assertTrue(fork.heldSectors() <= 6);
+            sessions.add(fork);
+        }
+        long used = usedHeap() - before;
+        assertTrue("10,000 sessions used " + used + " bytes.",
+                used < 64L * 1024 * 1024);
+        assertEquals(10000, sessions.size());
+        for (int id = 0; id < base.size(); id++) {
+            assertEquals(states[id], base.getState(id));
+            assertEquals(counts[id], base.getSector(id).entityCount());
+        }
+    }
+
+    /**
+     * Runs a Diffusion tick that changes every Sector's temperature and
+     * checks that the Sectors are marked dirty and handed to a listener in a
+     * single batch, and that a tick changing nothing reports nothing.
+     */
+    @Test
+    public void diffusionReportsChangedSectorsOnce() {
+        World world = grid(10);
+        world.takeDirty();
+        final List<List<Sector>> batches = new ArrayList<>();
+        world.addListener(new WorldListener() {
+            @Override
+            public void temperaturesChanged(List<Sector> sectors) {
+                batches.add(new ArrayList<>(sectors));
+            }
+        });
+        int changed = 0;
+        for (int id = 0; id < world.size(); id++) {
+            if (world.getState(id) != 3) {
+                changed++;
+            }
+        }
+        Diffusion diffusion = new Diffusion(world, 0, 1, 3, 1);
+        diffusion.tick();
+        assertEquals(1, batches.size());
+        assertEquals(changed, batches.get(0).size());
+        assertEquals(changed, world.takeDirty().size());
+        for (Sector sector : batches.get(0)) {
+            assertEquals(3, sector.getState());
+        }
+
+        diffusion.tick();
+        diffusion.shutdown();
+        assertEquals(1, batches.size());
+        assertEquals(0, world.takeDirty().size());
+    }
+
+    /**
+     * Returns the heap in use after a garbage collection.
+     *
+     * @return Bytes of heap in use.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Builds a square grid world with an Ally and an Enemy in every Sector,
+     * and the Player in the middle.
+     *
+     * @param side Number of Sectors along each side.
+     * @return Grid world.
+     */
+    private static World grid(int side) {
+        World world = new World();
+        world.setRandom(new RandomSource(7));
+        for (int id = 0; id < side * side; id++) {
+            world.addSector(new Sector("Room " + id, "A room.", 2));
+        }
+        for (int id = 0; id < side * side; id++) {
+            Sector sector = world.getSector(id);
+            if (id % side < side - 1) {
+                sector.setNeighbor(Direction.EAST, world.getSector(id + 1));
+                world.getSector(id + 1).setNeighbor(Direction.WEST, sector);
+            }
+            if (id / side < side - 1) {
+                sector.setNeighbor(Direction.SOUTH,
+                        world.getSector(id + side));
+                world.getSector(id + side).setNeighbor(Direction.NORTH,
+                        sector);
+            }
+            for (int i = 0; i < 2; i++) {
+                Entity entity = i == 0 ? new Ally("Ally " + id, "An ally.")
+                        : new Enemy("Enemy " + id, "An enemy.");
+                sector.addEntity(entity);
+                entity.setCurrentSector(sector);
+            }
+        }
+        Player player = new Player("Bill", "The player.");
+        Sector start = world.getSector(side * side / 2 + side / 2);
+        start.addEntity(player);
+        player.setCurrentSector(start);
+        world.setPlayer(player);
+        world.registerUnnumbered();
+        return world;
+    }
+}
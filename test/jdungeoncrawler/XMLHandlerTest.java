@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Daniel Truong.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jdungeoncrawler;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.xml.parsers.SAXParserFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * Tests of reading XML world files.
+ *
+ * @author Daniel Truong
+ */
+public class XMLHandlerTest {
+
+    /**
+     * Reads a world whose Player comes after an Ally in a Sector with room
+     * for one Entity, and checks that the load fails instead of leaving the
+     * World with a Player that is in no Sector.
+     *
+     * @throws Exception If no XML parser is available.
+     */
+    @Test
+    public void playerWithoutRoomFailsTheLoad() throws Exception {
+        XMLHandler handler = new XMLHandler();
+        try {
+            parse("<xml><sector name=\"Closet\" description=\"a closet\""
+                    + " state=\"cool\" capacity=\"1\">"
+                    + "<ally name=\"Ann\" description=\"a friend\" />"
+                    + "<player name=\"Bill\" description=\"you\" />"
+                    + "</sector></xml>", handler);
+            fail("The player was dropped without an error.");
+        } catch (SAXException expected) {
+            assertNull(handler.getWorld().getPlayer());
+        }
+    }
+
+    /**
+     * Reads worlds whose Sector has a capacity that is zero, negative or not
+     * a number, and checks that each load fails with an error naming the
+     * Sector.
+     *
+     * @throws Exception If no XML parser is available.
+     */
+    @Test
+    public void badCapacityFailsTheLoad() throws Exception {
+        for (String capacity : new String[] {"0", "-3", "ten"}) {
+            try {
+                parse("<xml><sector name=\"Closet\" description=\"a closet\""
+                        + " state=\"cool\" capacity=\"" + capacity + "\" />"
+                        + "</xml>", new XMLHandler());
+                fail("A capacity of " + capacity + " was accepted.");
+            } catch (SAXException expected) {
+                assertTrue(expected.getMessage().contains("Closet"));
+            }
+        }
+    }
+
+    /**
+     * Reads a world with more Enemies than their Sector can hold, and checks
+     * that the extra Enemies are left out while the Player is placed.
+     *
+     * @throws Exception If the world file cannot be parsed.
+     */
+    @Test
+    public void entitiesWithoutRoomAreLeftOut() throws Exception {
+        XMLHandler handler = new XMLHandler();
+        parse("<xml><sector name=\"Closet\" description=\"a closet\""
+                + " state=\"cool\" capacity=\"2\">"
+                + "<player name=\"Bill\" description=\"you\" />"
+                + "<enemy name=\"Rat\" description=\"a rat\" />"
+                + "<enemy name=\"Bat\" description=\"a bat\" />"
+                + "</sector></xml>", handler);
+        Player player = handler.getWorld().getPlayer();
+        assertEquals("Closet", player.getCurrentSector().getName());
+        assertEquals(2, player.getCurrentSector().entityCount());
+    }
+
+    /**
+     * Reads Entities that share a description, declared both on their own
+     * and through an archetype, and checks that they share one Archetype
+     * while each keeps its own name.
+     *
+     * @throws Exception If the world file cannot be parsed.
+     */
+    @Test
+    public void entitiesSharingDescriptionsKeepTheirNames() throws Exception {
+        XMLHandler handler = new XMLHandler();
+        parse("<xml><archetype id=\"fly\" name=\"House Fly\""
+                + " description=\"a pest\" />"
+                + "<sector name=\"Attic\" description=\"an attic\""
+                + " state=\"cool\" capacity=\"10\">"
+                + "<player name=\"Bill\" description=\"you\" />"
+                + "<enemy name=\"Rat\" description=\"a pest\" />"
+                + "<enemy name=\"Mouse\" description=\"a pest\" />"
+                + "<enemy archetype=\"fly\" />"
+                + "<enemy archetype=\"fly\" />"
+                + "</sector></xml>", handler);
+        List<Entity> entities = handler.getWorld().getPlayer()
+                .getCurrentSector().getEntities();
+        String[] names = {"Bill", "House Fly #1", "House Fly #2", "Mouse",
+            "Rat"};
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], entities.get(i).getName());
+        }
+        for (int i = 2; i < names.length; i++) {
+            assertSame(entities.get(1).getArchetype(),
+                    entities.get(i).getArchetype());
+            assertEquals("a pest", entities.get(i).getDescription());
+        }
+    }
+
+    /**
+     * Parses an XML world file held in a string.
+     *
+     * @param xml World file.
+     * @param handler Handler the file is parsed with.
+     * @throws Exception If the world file cannot be parsed.
+     */
+    private static void parse(String xml, XMLHandler handler)
+            throws Exception {
+        SAXParserFactory.newInstance().newSAXParser().parse(
+                new ByteArrayInputStream(xml.getBytes(
+                        StandardCharsets.UTF_8)), handler);
+    }
+}